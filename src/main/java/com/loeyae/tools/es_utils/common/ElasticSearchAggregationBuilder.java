@@ -7,14 +7,10 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCountAggregationBuilder;
-import org.reflections.Reflections;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.alibaba.fastjson.JSON.parse;
 import static org.elasticsearch.common.ParseField.CommonFields.FIELD;
@@ -30,28 +26,16 @@ import static org.elasticsearch.common.ParseField.CommonFields.FIELD;
 public class ElasticSearchAggregationBuilder {
 
     private static final String DEFAULT_ERROR = "ES Utils Error: ";
-    private static final String PARSE_METHOD_NAME = "parse";
     public static final String SUB_AGGREGATION_KEY = "sub";
     public static final String AGGREGATION_NAME_KEY = "aggregation_key";
     public static final String AGGREGATION_TYPE_COUNT = "count";
 
     protected static final Map<String, String> ALL_AGGREGATION_BUILDER_MAP = new HashMap<>();
+    private static final Map<String, ElasticSearchBuilderRegistry.AggregationParser> AGGREGATION_PARSER_MAP =
+            new ConcurrentHashMap<>();
 
     static {
-        Reflections reflections = new Reflections("org.elasticsearch.search.aggregations");
-        Set<Class<? extends AggregationBuilder>> aggregationBuilders =
-                reflections.getSubTypesOf(AggregationBuilder.class);
-        aggregationBuilders.forEach(item -> {
-            if (!Modifier.isAbstract(item.getModifiers())) {
-                try {
-                    Field field = item.getField("NAME");
-                    Object name = field.get(item);
-                    ALL_AGGREGATION_BUILDER_MAP.put(name.toString(), item.getName());
-                } catch (NoSuchFieldException | IllegalAccessException e) {
-                    log.error(DEFAULT_ERROR, e);
-                }
-            }
-        });
+        ALL_AGGREGATION_BUILDER_MAP.putAll(ElasticSearchBuilderRegistry.aggregationBuilders());
         ALL_AGGREGATION_BUILDER_MAP.put(AGGREGATION_TYPE_COUNT,
                 ValueCountAggregationBuilder.class.getName());
     }
@@ -140,8 +124,8 @@ public class ElasticSearchAggregationBuilder {
      */
     @SuppressWarnings("unchecked")
     public static AggregationBuilder builder(String key, Object aggregation) {
-        String className = ALL_AGGREGATION_BUILDER_MAP.get(key);
-        if (null == className) {
+        ElasticSearchBuilderRegistry.AggregationParser parser = aggregationParser(key);
+        if (null == parser) {
             return null;
         }
         Map<String, Object> parsedAggregation = new HashMap<>();
@@ -163,9 +147,6 @@ public class ElasticSearchAggregationBuilder {
             throw new IllegalArgumentException();
         }
         try {
-            Class<?> aggregationBuilderClass = Class.forName(className);
-            Method method = aggregationBuilderClass.getMethod(PARSE_METHOD_NAME, String.class,
-                    XContentParser.class);
             JSONObject jsonObject = new JSONObject(parsedAggregation);
             XContentType xContentType = XContentType.JSON;
             AggregationBuilder aggregationBuilder;
@@ -178,17 +159,33 @@ public class ElasticSearchAggregationBuilder {
                 if (!aggregationNameSet.isEmpty()) {
                     aggregationName = aggregationNameSet.iterator().next();
                 }
-                aggregationBuilder = (AggregationBuilder) method.invoke(null, aggregationName,
-                        xContentParser);
+                aggregationBuilder = parser.parse(aggregationName, xContentParser);
             }
             buildSubAggregation(aggregationBuilder, subAggregation);
             return aggregationBuilder;
-        } catch (ClassNotFoundException | NoSuchMethodException | IOException | IllegalAccessException | InvocationTargetException e) {
+        } catch (IOException e) {
             log.error(DEFAULT_ERROR, e);
         }
         return null;
     }
 
+    /**
+     * aggregationParser, 首次使用时绑定
+     *
+     * @param key Name of AggregationBuilder
+     * @return parser of AggregationBuilder
+     */
+    protected static ElasticSearchBuilderRegistry.AggregationParser aggregationParser(String key) {
+        String className = ALL_AGGREGATION_BUILDER_MAP.get(key);
+        if (null == className) {
+            return null;
+        }
+        return AGGREGATION_PARSER_MAP.computeIfAbsent(key,
+                k -> ElasticSearchBuilderRegistry.bind(className,
+                        ElasticSearchBuilderRegistry.AGGREGATION_PARSE_METHOD_NAME,
+                        ElasticSearchBuilderRegistry.AggregationParser.class));
+    }
+
     /**
      * buildSubAggregation
      *
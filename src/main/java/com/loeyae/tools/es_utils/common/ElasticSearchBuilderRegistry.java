@@ -0,0 +1,241 @@
+package com.loeyae.tools.es_utils.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.reflections.Reflections;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * ElasticSearch Builder Registry.
+ *
+ * 构建时(process-classes)扫描 QueryBuilder 与 AggregationBuilder, 生成 name -> class 的注册表,
+ * 运行时直接加载; 注册表缺失或 ElasticSearch 版本不一致时回退到 Reflections 扫描.
+ * 解析方法通过 LambdaMetafactory 绑定为函数接口, 调用时不再经过反射.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchBuilderRegistry {
+
+    private static final String DEFAULT_ERROR = "ES Utils Error: ";
+    public static final String QUERY_BUILDER_PACKAGE = "org.elasticsearch.index.query";
+    public static final String AGGREGATION_BUILDER_PACKAGE = "org.elasticsearch.search.aggregations";
+    public static final String QUERY_BUILDER_RESOURCE = "META-INF/es_utils/query-builders.properties";
+    public static final String AGGREGATION_BUILDER_RESOURCE = "META-INF/es_utils/aggregation-builders.properties";
+    public static final String VERSION_KEY = "#version";
+    public static final String QUERY_PARSE_METHOD_NAME = "fromXContent";
+    public static final String AGGREGATION_PARSE_METHOD_NAME = "parse";
+    private static final String NAME_FIELD = "NAME";
+
+    private ElasticSearchBuilderRegistry() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 生成注册表
+     *
+     * @param args output directory, default target/classes
+     * @throws IOException write failed
+     */
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : "target/classes");
+        write(output.resolve(QUERY_BUILDER_RESOURCE), scanQueryBuilders());
+        write(output.resolve(AGGREGATION_BUILDER_RESOURCE), scanAggregationBuilders());
+    }
+
+    /**
+     * QueryBuilder 注册表
+     *
+     * @return Map of name and class name
+     */
+    public static Map<String, String> queryBuilders() {
+        Map<String, String> registry = load(QUERY_BUILDER_RESOURCE);
+        if (null == registry) {
+            log.warn("registry {} not found or stale, scanning {}", QUERY_BUILDER_RESOURCE,
+                    QUERY_BUILDER_PACKAGE);
+            registry = scanQueryBuilders();
+        }
+        return registry;
+    }
+
+    /**
+     * AggregationBuilder 注册表
+     *
+     * @return Map of name and class name
+     */
+    public static Map<String, String> aggregationBuilders() {
+        Map<String, String> registry = load(AGGREGATION_BUILDER_RESOURCE);
+        if (null == registry) {
+            log.warn("registry {} not found or stale, scanning {}", AGGREGATION_BUILDER_RESOURCE,
+                    AGGREGATION_BUILDER_PACKAGE);
+            registry = scanAggregationBuilders();
+        }
+        return registry;
+    }
+
+    /**
+     * 扫描 QueryBuilder
+     *
+     * @return Map of name and class name
+     */
+    public static Map<String, String> scanQueryBuilders() {
+        return scan(QUERY_BUILDER_PACKAGE, QueryBuilder.class);
+    }
+
+    /**
+     * 扫描 AggregationBuilder
+     *
+     * @return Map of name and class name
+     */
+    public static Map<String, String> scanAggregationBuilders() {
+        return scan(AGGREGATION_BUILDER_PACKAGE, AggregationBuilder.class);
+    }
+
+    /**
+     * scan
+     *
+     * @param prefix package
+     * @param type   super type
+     * @return Map of name and class name
+     */
+    protected static Map<String, String> scan(String prefix, Class<?> type) {
+        Map<String, String> registry = new TreeMap<>();
+        Reflections reflections = new Reflections(prefix);
+        reflections.getSubTypesOf(type).forEach(item -> {
+            if (!Modifier.isAbstract(item.getModifiers())) {
+                try {
+                    Field field = item.getField(NAME_FIELD);
+                    Object name = field.get(item);
+                    registry.put(name.toString(), item.getName());
+                } catch (NoSuchFieldException | IllegalAccessException e) {
+                    log.error(DEFAULT_ERROR, e);
+                }
+            }
+        });
+        return registry;
+    }
+
+    /**
+     * 加载注册表, 缺失或版本不一致时返回 null
+     *
+     * @param resource classpath resource
+     * @return Map of name and class name
+     */
+    protected static Map<String, String> load(String resource) {
+        ClassLoader classLoader = ElasticSearchBuilderRegistry.class.getClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+            if (null == inputStream) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            return read(properties);
+        } catch (IOException e) {
+            log.error(DEFAULT_ERROR, e);
+        }
+        return null;
+    }
+
+    /**
+     * read
+     *
+     * @param properties registry properties
+     * @return Map of name and class name, null if stale
+     */
+    protected static Map<String, String> read(Properties properties) {
+        if (!Version.CURRENT.toString().equals(properties.getProperty(VERSION_KEY))) {
+            return null;
+        }
+        Map<String, String> registry = new HashMap<>(properties.size());
+        properties.stringPropertyNames().forEach(name -> {
+            if (!VERSION_KEY.equals(name)) {
+                registry.put(name, properties.getProperty(name));
+            }
+        });
+        return registry;
+    }
+
+    /**
+     * write
+     *
+     * @param path     output file
+     * @param registry Map of name and class name
+     * @throws IOException write failed
+     */
+    protected static void write(Path path, Map<String, String> registry) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("\\" + VERSION_KEY + "=" + Version.CURRENT + "\n");
+            for (Map.Entry<String, String> entry : new TreeMap<>(registry).entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    /**
+     * 绑定静态方法为函数接口
+     *
+     * @param className  class name
+     * @param methodName static method, parameters same as the functional method
+     * @param type       functional interface
+     * @param <T>        type of functional interface
+     * @return instance of functional interface
+     */
+    public static <T> T bind(String className, String methodName, Class<T> type) {
+        Method functional = functionalMethod(type);
+        try {
+            Method method = Class.forName(className).getMethod(methodName, functional.getParameterTypes());
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, functional.getName(),
+                    MethodType.methodType(type),
+                    MethodType.methodType(functional.getReturnType(), functional.getParameterTypes()),
+                    handle, handle.type());
+            return type.cast(callSite.getTarget().invoke());
+        } catch (Throwable e) {
+            log.error(DEFAULT_ERROR, e);
+        }
+        return null;
+    }
+
+    private static Method functionalMethod(Class<?> type) {
+        for (Method method : type.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(type.getName() + " is not a functional interface");
+    }
+
+    /**
+     * QueryBuilder 解析函数
+     */
+    @FunctionalInterface
+    public interface QueryParser {
+        QueryBuilder fromXContent(XContentParser parser) throws IOException;
+    }
+
+    /**
+     * AggregationBuilder 解析函数
+     */
+    @FunctionalInterface
+    public interface AggregationParser {
+        AggregationBuilder parse(String aggregationName, XContentParser parser) throws IOException;
+    }
+
+}
@@ -0,0 +1,379 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.ActiveShardCount;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.*;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.xcontent.*;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * ElasticSearch Bulk Body.
+ *
+ * 通过 low level client 发送 bulk: RestHighLevelClient 会解析并重新编码每个 index 请求的 source,
+ * 这里 source 与 bulk 格式相同时原样写入 body, 只有格式不同时才转换.
+ * bulk body 只支持 JSON 和 SMILE, 格式取第一个带 source 的请求.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchBulkBody {
+
+    private static final String ENDPOINT = "/_bulk";
+
+    private ElasticSearchBulkBody() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 同步执行 bulk
+     *
+     * @param client      instance of RestClient
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @return instance of BulkResponse
+     * @throws IOException 请求失败, 非 2xx 响应为 ElasticsearchStatusException
+     */
+    public static BulkResponse bulk(RestClient client, BulkRequest bulkRequest, RequestOptions options)
+            throws IOException {
+        return bulk(client, bulkRequest, options, null);
+    }
+
+    /**
+     * 同步执行 bulk, 按 compression 压缩请求体和接受 gzip 响应
+     *
+     * @param client      instance of RestClient
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @param compression instance of ElasticSearchCompression, null for none
+     * @return instance of BulkResponse
+     * @throws IOException 请求失败, 非 2xx 响应为 ElasticsearchStatusException
+     */
+    public static BulkResponse bulk(RestClient client, BulkRequest bulkRequest, RequestOptions options,
+                                    ElasticSearchCompression compression) throws IOException {
+        try {
+            return response(client.performRequest(request(bulkRequest, options, compression)));
+        } catch (ResponseException e) {
+            throw exception(e);
+        }
+    }
+
+    /**
+     * 异步执行 bulk
+     *
+     * @param client      instance of RestClient
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @param listener    listener of BulkResponse
+     */
+    public static void bulkAsync(RestClient client, BulkRequest bulkRequest, RequestOptions options,
+                                 ActionListener<BulkResponse> listener) {
+        bulkAsync(client, bulkRequest, options, null, listener);
+    }
+
+    /**
+     * 异步执行 bulk, 按 compression 压缩请求体和接受 gzip 响应
+     *
+     * @param client      instance of RestClient
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @param compression instance of ElasticSearchCompression, null for none
+     * @param listener    listener of BulkResponse
+     */
+    public static void bulkAsync(RestClient client, BulkRequest bulkRequest, RequestOptions options,
+                                 ElasticSearchCompression compression, ActionListener<BulkResponse> listener) {
+        Request request;
+        try {
+            request = request(bulkRequest, options, compression);
+        } catch (IOException | RuntimeException e) {
+            listener.onFailure(e);
+            return;
+        }
+        client.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                BulkResponse bulkResponse;
+                try {
+                    bulkResponse = response(response);
+                } catch (IOException | RuntimeException e) {
+                    listener.onFailure(e);
+                    return;
+                }
+                listener.onResponse(bulkResponse);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e instanceof ResponseException ? exception((ResponseException) e) : e);
+            }
+        });
+    }
+
+    /**
+     * 转换为 low level 请求
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @return instance of Request
+     */
+    public static Request request(BulkRequest bulkRequest, RequestOptions options) {
+        Request request = new Request("POST", ENDPOINT);
+        request.setOptions(options);
+        addParameters(request, bulkRequest);
+        request.setEntity(entity(bulkRequest));
+        return request;
+    }
+
+    /**
+     * 转换为 low level 请求, 按 compression 压缩请求体和接受 gzip 响应
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @param options     instance of RequestOptions
+     * @param compression instance of ElasticSearchCompression, null for none
+     * @return instance of Request
+     * @throws IOException 压缩失败
+     */
+    public static Request request(BulkRequest bulkRequest, RequestOptions options,
+                                  ElasticSearchCompression compression) throws IOException {
+        if (null == compression) {
+            return request(bulkRequest, options);
+        }
+        Request request = new Request("POST", ENDPOINT);
+        request.setOptions(compression.options(options));
+        addParameters(request, bulkRequest);
+        request.setEntity(compression.compress(entity(bulkRequest)));
+        return request;
+    }
+
+    private static void addParameters(Request request, BulkRequest bulkRequest) {
+        if (null != bulkRequest.timeout()) {
+            request.addParameter("timeout", bulkRequest.timeout().getStringRep());
+        }
+        if (WriteRequest.RefreshPolicy.NONE != bulkRequest.getRefreshPolicy()) {
+            request.addParameter("refresh", bulkRequest.getRefreshPolicy().getValue());
+        }
+        if (ActiveShardCount.DEFAULT != bulkRequest.waitForActiveShards()) {
+            request.addParameter("wait_for_active_shards",
+                    bulkRequest.waitForActiveShards().toString().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * 生成 bulk body, 与 bulk 格式相同的 source 原样写入
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @return instance of HttpEntity
+     */
+    public static HttpEntity entity(BulkRequest bulkRequest) {
+        XContentType bulkType = null;
+        for (DocWriteRequest<?> request : bulkRequest.requests()) {
+            bulkType = bulkContentType(request);
+            if (null != bulkType) {
+                break;
+            }
+        }
+        if (null == bulkType) {
+            bulkType = XContentType.JSON;
+        }
+        byte separator = bulkType.xContent().streamSeparator();
+        Body body = new Body();
+        try {
+            for (DocWriteRequest<?> request : bulkRequest.requests()) {
+                writeAction(body, request, bulkType);
+                body.write(separator);
+                if (request instanceof IndexRequest) {
+                    IndexRequest indexRequest = (IndexRequest) request;
+                    if (bulkType == indexRequest.getContentType()) {
+                        indexRequest.source().writeTo(body);
+                    } else {
+                        transcode(indexRequest.source(), indexRequest.getContentType(), bulkType).writeTo(body);
+                    }
+                    body.write(separator);
+                } else if (request instanceof UpdateRequest) {
+                    XContentHelper.toXContent((UpdateRequest) request, bulkType, false).writeTo(body);
+                    body.write(separator);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.entity(ContentType.create(bulkType.mediaTypeWithoutParameters(), (Charset) null));
+    }
+
+    private static void writeAction(OutputStream out, DocWriteRequest<?> request, XContentType bulkType)
+            throws IOException {
+        try (XContentBuilder builder = new XContentBuilder(bulkType.xContent(), out)) {
+            builder.startObject().startObject(request.opType().getLowercase());
+            field(builder, "_index", request.index());
+            field(builder, "_type", request.type());
+            field(builder, "_id", request.id());
+            field(builder, "routing", request.routing());
+            field(builder, "parent", request.parent());
+            if (Versions.MATCH_ANY != request.version()) {
+                builder.field("version", request.version());
+            }
+            if (VersionType.INTERNAL != request.versionType()) {
+                builder.field("version_type", request.versionType().toString().toLowerCase(Locale.ROOT));
+            }
+            if (SequenceNumbers.UNASSIGNED_SEQ_NO != request.ifSeqNo()) {
+                builder.field("if_seq_no", request.ifSeqNo());
+                builder.field("if_primary_term", request.ifPrimaryTerm());
+            }
+            if (request instanceof IndexRequest) {
+                field(builder, "pipeline", ((IndexRequest) request).getPipeline());
+            } else if (request instanceof UpdateRequest) {
+                UpdateRequest updateRequest = (UpdateRequest) request;
+                if (updateRequest.retryOnConflict() > 0) {
+                    builder.field("retry_on_conflict", updateRequest.retryOnConflict());
+                }
+                if (null != updateRequest.fetchSource()) {
+                    builder.field("_source", updateRequest.fetchSource());
+                }
+            }
+            builder.endObject().endObject();
+        }
+    }
+
+    private static void field(XContentBuilder builder, String name, String value) throws IOException {
+        if (Strings.hasLength(value)) {
+            builder.field(name, value);
+        }
+    }
+
+    /**
+     * 解析 bulk 响应
+     *
+     * @param response instance of Response
+     * @return instance of BulkResponse
+     * @throws IOException 解析失败
+     */
+    public static BulkResponse response(Response response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        XContentType xContentType = null == entity.getContentType() ? null :
+                XContentType.fromMediaTypeOrFormat(entity.getContentType().getValue());
+        if (null == xContentType) {
+            xContentType = XContentType.JSON;
+        }
+        try (InputStream content = entity.getContent();
+             XContentParser parser = xContentType.xContent().createParser(NamedXContentRegistry.EMPTY,
+                     LoggingDeprecationHandler.INSTANCE, content)) {
+            return BulkResponse.fromXContent(parser);
+        }
+    }
+
+    private static ElasticsearchStatusException exception(ResponseException e) {
+        RestStatus status = RestStatus.fromCode(e.getResponse().getStatusLine().getStatusCode());
+        return new ElasticsearchStatusException(e.getMessage(), null == status ? RestStatus.INTERNAL_SERVER_ERROR :
+                status, e);
+    }
+
+    /**
+     * request 在 bulk body 中的格式, 只支持 JSON 和 SMILE, 其他格式的 source 按 SMILE 写入, 不修改 request
+     *
+     * @param request instance of DocWriteRequest
+     * @return content type in bulk body, null if no source
+     */
+    public static XContentType bulkContentType(DocWriteRequest<?> request) {
+        if (request instanceof IndexRequest) {
+            return bulkContentType((IndexRequest) request);
+        }
+        if (request instanceof UpdateRequest) {
+            UpdateRequest updateRequest = (UpdateRequest) request;
+            XContentType doc = bulkContentType(updateRequest.doc());
+            return null == doc ? bulkContentType(updateRequest.upsertRequest()) : doc;
+        }
+        return null;
+    }
+
+    private static XContentType bulkContentType(IndexRequest indexRequest) {
+        if (null == indexRequest || null == indexRequest.source() || null == indexRequest.getContentType()) {
+            return null;
+        }
+        return XContentType.JSON == indexRequest.getContentType() ? XContentType.JSON : XContentType.SMILE;
+    }
+
+    /**
+     * 将 request 的 source 转为 {@link #bulkContentType(DocWriteRequest)} 的格式, 会替换 request 中的 source;
+     * update 的 upsert 转为与 doc 相同的格式
+     *
+     * @param request instance of DocWriteRequest
+     * @return content type of source, null if no source
+     */
+    public static XContentType normalizeSource(DocWriteRequest<?> request) {
+        XContentType target = bulkContentType(request);
+        if (request instanceof IndexRequest) {
+            normalizeSource((IndexRequest) request, target);
+        } else if (request instanceof UpdateRequest) {
+            normalizeSource(((UpdateRequest) request).doc(), target);
+            normalizeSource(((UpdateRequest) request).upsertRequest(), target);
+        }
+        return target;
+    }
+
+    private static void normalizeSource(IndexRequest indexRequest, XContentType target) {
+        if (null == indexRequest || null == indexRequest.source() || null == indexRequest.getContentType()) {
+            return;
+        }
+        XContentType contentType = indexRequest.getContentType();
+        if (contentType != target) {
+            indexRequest.source(transcode(indexRequest.source(), contentType, target), target);
+        }
+    }
+
+    /**
+     * 转换 source 的格式
+     *
+     * @param source source bytes
+     * @param from   content type of source
+     * @param to     target content type
+     * @return source bytes of target content type
+     */
+    public static BytesReference transcode(BytesReference source, XContentType from, XContentType to) {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source, from);
+             XContentBuilder builder = XContentBuilder.builder(to.xContent())) {
+            builder.copyCurrentStructure(parser);
+            return BytesReference.bytes(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 直接以内部数组生成 entity, 避免复制
+     */
+    private static class Body extends ByteArrayOutputStream {
+
+        Body() {
+            super(8192);
+        }
+
+        HttpEntity entity(ContentType contentType) {
+            return new ByteArrayEntity(buf, 0, count, contentType);
+        }
+    }
+
+}
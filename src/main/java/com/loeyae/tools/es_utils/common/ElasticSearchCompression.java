@@ -0,0 +1,377 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.apache.http.*;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.HttpAsyncResponseConsumerFactory;
+import org.elasticsearch.client.RequestOptions;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ElasticSearch Compression.
+ *
+ * 6.5 的 async client 在请求拦截器执行前已取得请求体, 并在响应拦截器之后替换响应 entity, 因此不用拦截器:
+ * {@link #compress(HttpEntity)} 压缩自行生成的请求体 (bulk), 不小于 minBytes 且压缩后变小时才替换;
+ * {@link #options(RequestOptions)} 添加 Accept-Encoding: gzip, 并在读取响应时解压 gzip 响应.
+ * 记录压缩前后的字节数和压缩、解压耗时.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchCompression {
+
+    public static final String GZIP = "gzip";
+
+    public static final int DEFAULT_MIN_BYTES = 1024;
+
+    private final boolean enabled;
+
+    private final int minBytes;
+
+    private final int level;
+
+    private final boolean acceptGzip;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    private final AtomicLong compressedRequestBytes = new AtomicLong();
+
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    private final AtomicLong responses = new AtomicLong();
+
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    private final AtomicLong compressedResponseBytes = new AtomicLong();
+
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    /**
+     * 构造
+     *
+     * @param enabled    compress request bodies
+     * @param minBytes   min bytes of body to compress
+     * @param level      deflate level, 1 (fastest) to 9 (smallest)
+     * @param acceptGzip accept gzip responses
+     */
+    public ElasticSearchCompression(boolean enabled, int minBytes, int level, boolean acceptGzip) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        }
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.level = level;
+        this.acceptGzip = acceptGzip;
+    }
+
+    /**
+     * 压缩请求体
+     *
+     * @param entity request entity
+     * @return gzip entity, or the entity itself if disabled, too small, not repeatable or not smaller
+     * @throws IOException 读取请求体失败
+     */
+    public HttpEntity compress(HttpEntity entity) throws IOException {
+        if (!enabled || null == entity || null != entity.getContentEncoding() || !entity.isRepeatable()
+                || entity.getContentLength() < minBytes) {
+            return entity;
+        }
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE,
+                entity.getContentLength() / 4 + 64));
+        try (GZIPOutputStream gzip = new LevelGZIPOutputStream(out, level)) {
+            entity.writeTo(gzip);
+        }
+        compressNanos.addAndGet(System.nanoTime() - start);
+        if (out.size() >= entity.getContentLength()) {
+            return entity;
+        }
+        ByteArrayEntity compressed = new ByteArrayEntity(out.toByteArray());
+        compressed.setContentType(entity.getContentType());
+        compressed.setContentEncoding(GZIP);
+        requests.incrementAndGet();
+        requestBytes.addAndGet(entity.getContentLength());
+        compressedRequestBytes.addAndGet(out.size());
+        return compressed;
+    }
+
+    /**
+     * 接受并解压 gzip 响应, 未开启时返回原 options
+     *
+     * @param options base RequestOptions
+     * @return instance of RequestOptions
+     */
+    public RequestOptions options(RequestOptions options) {
+        if (!acceptGzip) {
+            return options;
+        }
+        HttpAsyncResponseConsumerFactory factory = options.getHttpAsyncResponseConsumerFactory();
+        RequestOptions.Builder builder = options.toBuilder();
+        builder.addHeader(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        builder.setHttpAsyncResponseConsumerFactory(() ->
+                new DecompressingConsumer(factory.createHttpAsyncResponseConsumer()));
+        return builder.build();
+    }
+
+    /**
+     * gzip 响应替换为读取时解压的 entity
+     *
+     * @param response instance of HttpResponse
+     */
+    void decompress(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (null == entity || null == encoding || !GZIP.equalsIgnoreCase(encoding.getValue().trim())) {
+            return;
+        }
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.setEntity(new DecompressingEntity(entity));
+        responses.incrementAndGet();
+        if (entity.getContentLength() > 0) {
+            compressedResponseBytes.addAndGet(entity.getContentLength());
+        }
+    }
+
+    /**
+     * 压缩的请求数
+     *
+     * @return count
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * 压缩前的请求字节数
+     *
+     * @return bytes
+     */
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * 压缩后的请求字节数
+     *
+     * @return bytes
+     */
+    public long getCompressedRequestBytes() {
+        return compressedRequestBytes.get();
+    }
+
+    /**
+     * 请求的压缩率, 压缩后 / 压缩前
+     *
+     * @return ratio, 1 if none
+     */
+    public double getRequestRatio() {
+        long bytes = requestBytes.get();
+        return bytes == 0 ? 1.0 : (double) compressedRequestBytes.get() / bytes;
+    }
+
+    /**
+     * 压缩请求耗时, 含压缩后未变小而放弃的请求
+     *
+     * @return nanos
+     */
+    public long getCompressNanos() {
+        return compressNanos.get();
+    }
+
+    /**
+     * 解压的响应数
+     *
+     * @return count
+     */
+    public long getResponses() {
+        return responses.get();
+    }
+
+    /**
+     * 解压后已读取的响应字节数
+     *
+     * @return bytes
+     */
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * 压缩的响应字节数
+     *
+     * @return bytes
+     */
+    public long getCompressedResponseBytes() {
+        return compressedResponseBytes.get();
+    }
+
+    /**
+     * 响应的压缩率, 压缩后 / 解压后
+     *
+     * @return ratio, 1 if none
+     */
+    public double getResponseRatio() {
+        long bytes = responseBytes.get();
+        return bytes == 0 ? 1.0 : (double) compressedResponseBytes.get() / bytes;
+    }
+
+    /**
+     * 读取响应时的解压耗时
+     *
+     * @return nanos
+     */
+    public long getDecompressNanos() {
+        return decompressNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticSearchCompression{requests=" + requests + ", requestRatio=" + getRequestRatio()
+                + ", compressNanos=" + compressNanos + ", responses=" + responses + ", responseRatio="
+                + getResponseRatio() + ", decompressNanos=" + decompressNanos + "}";
+    }
+
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * 响应完成后解压
+     */
+    private class DecompressingConsumer implements HttpAsyncResponseConsumer<HttpResponse> {
+
+        private final HttpAsyncResponseConsumer<HttpResponse> consumer;
+
+        DecompressingConsumer(HttpAsyncResponseConsumer<HttpResponse> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void responseReceived(HttpResponse response) throws IOException, HttpException {
+            consumer.responseReceived(response);
+        }
+
+        @Override
+        public void consumeContent(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            consumer.consumeContent(decoder, ioControl);
+        }
+
+        @Override
+        public void responseCompleted(HttpContext context) {
+            consumer.responseCompleted(context);
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            consumer.failed(ex);
+        }
+
+        @Override
+        public Exception getException() {
+            return consumer.getException();
+        }
+
+        @Override
+        public HttpResponse getResult() {
+            HttpResponse response = consumer.getResult();
+            if (null != response) {
+                decompress(response);
+            }
+            return response;
+        }
+
+        @Override
+        public boolean isDone() {
+            return consumer.isDone();
+        }
+
+        @Override
+        public void close() throws IOException {
+            consumer.close();
+        }
+
+        @Override
+        public boolean cancel() {
+            return consumer.cancel();
+        }
+    }
+
+    /**
+     * 读取时解压, 记录解压后的字节数和耗时
+     */
+    private class DecompressingEntity extends HttpEntityWrapper {
+
+        DecompressingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            long start = System.nanoTime();
+            InputStream gzip = new GZIPInputStream(wrappedEntity.getContent());
+            decompressNanos.addAndGet(System.nanoTime() - start);
+            return new FilterInputStream(gzip) {
+                @Override
+                public int read() throws IOException {
+                    long begin = System.nanoTime();
+                    int b = super.read();
+                    decompressNanos.addAndGet(System.nanoTime() - begin);
+                    if (b >= 0) {
+                        responseBytes.incrementAndGet();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    long begin = System.nanoTime();
+                    int n = super.read(b, off, len);
+                    decompressNanos.addAndGet(System.nanoTime() - begin);
+                    if (n > 0) {
+                        responseBytes.addAndGet(n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+    }
+
+}
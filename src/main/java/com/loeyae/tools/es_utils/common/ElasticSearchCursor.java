@@ -0,0 +1,70 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * ElasticSearch Cursor.
+ *
+ * search_after 分页游标, 最后一条结果的 sort values 编码为 URL 安全的 Base64 字符串.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchCursor {
+
+    private ElasticSearchCursor() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 编码
+     *
+     * @param sortValues sort values of last hit
+     * @return cursor, null if sortValues is empty
+     */
+    public static String encode(Object[] sortValues) {
+        if (null == sortValues || sortValues.length == 0) {
+            return null;
+        }
+        byte[] json = JSON.toJSONString(sortValues).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    /**
+     * 解码
+     *
+     * @param cursor cursor
+     * @return sort values for search_after
+     * @throws IllegalArgumentException if cursor is malformed
+     */
+    public static Object[] decode(String cursor) {
+        JSONArray array;
+        try {
+            array = JSON.parseArray(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | JSONException e) {
+            throw new IllegalArgumentException("malformed cursor [" + cursor + "]", e);
+        }
+        if (null == array || array.isEmpty()) {
+            throw new IllegalArgumentException("malformed cursor [" + cursor + "]");
+        }
+        Object[] sortValues = array.toArray();
+        for (int i = 0; i < sortValues.length; i++) {
+            Object value = sortValues[i];
+            if (value instanceof BigDecimal) {
+                sortValues[i] = ((BigDecimal) value).doubleValue();
+            } else if (null != value && !(value instanceof String || value instanceof Integer
+                    || value instanceof Long || value instanceof Boolean)) {
+                throw new IllegalArgumentException("malformed cursor [" + cursor + "]");
+            }
+        }
+        return sortValues;
+    }
+
+}
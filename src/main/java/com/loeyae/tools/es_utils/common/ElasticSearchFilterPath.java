@@ -0,0 +1,114 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.utils.URIBuilder;
+import org.elasticsearch.client.RequestOptions;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.StringJoiner;
+
+/**
+ * ElasticSearch Filter Path.
+ *
+ * 通过请求头指定 filter_path, 拦截器将其移除并追加为 URL 参数, 裁剪响应中不需要的元数据;
+ * _msearch 请求的路径自动加上 responses 前缀.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchFilterPath {
+
+    public static final String HEADER_NAME = "X-ES-Utils-Filter-Path";
+
+    public static final String PARAMETER_NAME = "filter_path";
+
+    private static final String MULTI_SEARCH = "/_msearch";
+
+    private static final String MULTI_SEARCH_PREFIX = "responses.";
+
+    /**
+     * SearchResponse 要求 skipped 不大于 total, 缺少 _shards.total 时解析为 -1, 始终保留
+     */
+    private static final String SHARDS_TOTAL = "_shards.total";
+
+    /**
+     * search/scroll 默认保留的字段: scroll id、total、_id、_source、sort、fields、highlight、inner_hits、
+     * aggregations、suggest、分片失败和错误信息, 去除 _index、_type、_score、took 等元数据
+     */
+    public static final String[] SEARCH = new String[]{
+            "_scroll_id", "timed_out", "terminated_early", SHARDS_TOTAL, "_shards.failed", "_shards.failures",
+            "hits.total", "hits.hits._id", "hits.hits._source", "hits.hits.sort", "hits.hits.fields",
+            "hits.hits.highlight", "hits.hits.inner_hits", "aggregations", "suggest", "error", "status"};
+
+    /**
+     * 需要添加到 HttpAsyncClientBuilder
+     */
+    public static final HttpRequestInterceptor INTERCEPTOR = (request, context) -> {
+        Header header = request.getFirstHeader(HEADER_NAME);
+        if (null == header) {
+            return;
+        }
+        request.removeHeaders(HEADER_NAME);
+        if (request instanceof HttpRequestWrapper) {
+            HttpRequestWrapper wrapper = (HttpRequestWrapper) request;
+            wrapper.setURI(rewrite(wrapper.getURI(), header.getValue()));
+        }
+    };
+
+    private ElasticSearchFilterPath() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 带 filter_path 的 RequestOptions, 自动保留 _shards.total
+     *
+     * @param options    base RequestOptions
+     * @param filterPath filter paths, empty for no filtering
+     * @return instance of RequestOptions
+     */
+    public static RequestOptions options(RequestOptions options, String... filterPath) {
+        if (null == filterPath || filterPath.length == 0) {
+            return options;
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        boolean shardsTotal = false;
+        for (String path : filterPath) {
+            joiner.add(path);
+            shardsTotal |= SHARDS_TOTAL.equals(path) || "_shards".equals(path);
+        }
+        if (!shardsTotal) {
+            joiner.add(SHARDS_TOTAL);
+        }
+        RequestOptions.Builder builder = options.toBuilder();
+        builder.addHeader(HEADER_NAME, joiner.toString());
+        return builder.build();
+    }
+
+    /**
+     * 追加 filter_path 参数, _msearch 时加上 responses 前缀
+     *
+     * @param uri        request uri
+     * @param filterPath comma separated filter paths
+     * @return uri with filter_path
+     */
+    public static URI rewrite(URI uri, String filterPath) {
+        String value = filterPath;
+        if (null != uri.getPath() && uri.getPath().endsWith(MULTI_SEARCH)) {
+            StringJoiner joiner = new StringJoiner(",");
+            for (String path : filterPath.split(",")) {
+                joiner.add(MULTI_SEARCH_PREFIX + path.trim());
+            }
+            value = joiner.toString();
+        }
+        try {
+            return new URIBuilder(uri).setParameter(PARAMETER_NAME, value).build();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("can not add filter_path to [" + uri + "]", e);
+        }
+    }
+
+}
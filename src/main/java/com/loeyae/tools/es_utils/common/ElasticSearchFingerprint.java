@@ -0,0 +1,304 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.alibaba.fastjson.JSON;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * ElasticSearch Fingerprint.
+ *
+ * 查询/聚合条件的128位结构指纹, Map 与 key 顺序无关, List 与 Object[] 区分,
+ * QueryBuilder/AggregationBuilder 按 XContent 输出流计算, 不生成字符串.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public final class ElasticSearchFingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long TAG_NULL = 0x01;
+    private static final long TAG_TRUE = 0x02;
+    private static final long TAG_FALSE = 0x03;
+    private static final long TAG_LONG = 0x04;
+    private static final long TAG_DOUBLE = 0x05;
+    private static final long TAG_STRING = 0x06;
+    private static final long TAG_MAP = 0x07;
+    private static final long TAG_LIST = 0x08;
+    private static final long TAG_ARRAY = 0x09;
+    private static final long TAG_XCONTENT = 0x0a;
+    private static final long TAG_OTHER = 0x0b;
+
+    private final long high;
+
+    private final long low;
+
+    private ElasticSearchFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * 计算指纹, String 按 JSON 解析
+     *
+     * @param query Map, List, JSON String, QueryBuilder or AggregationBuilder
+     * @return fingerprint
+     */
+    public static ElasticSearchFingerprint of(Object query) {
+        Hasher hasher = new Hasher();
+        if (query instanceof String) {
+            hash(hasher, JSON.parse((String) query));
+        } else {
+            hash(hasher, query);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * 计算指纹
+     *
+     * @param builder QueryBuilder or AggregationBuilder
+     * @return fingerprint
+     */
+    public static ElasticSearchFingerprint of(ToXContent builder) {
+        Hasher hasher = new Hasher();
+        hash(hasher, builder);
+        return hasher.finish();
+    }
+
+    /**
+     * 计算 SearchRequest 指纹, 包括 indices、types、routing、preference、search type、
+     * request cache、indices options、scroll 和 source
+     *
+     * @param searchRequest instance of SearchRequest
+     * @return fingerprint
+     */
+    public static ElasticSearchFingerprint ofRequest(SearchRequest searchRequest) {
+        Hasher hasher = new Hasher();
+        hash(hasher, searchRequest.indices());
+        hash(hasher, searchRequest.types());
+        hash(hasher, searchRequest.routing());
+        hash(hasher, searchRequest.preference());
+        hash(hasher, searchRequest.searchType().name());
+        hash(hasher, searchRequest.requestCache());
+        hash(hasher, searchRequest.indicesOptions().toString());
+        hash(hasher, null == searchRequest.scroll() ? null : searchRequest.scroll().keepAlive().getStringRep());
+        hash(hasher, searchRequest.source());
+        return hasher.finish();
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * 64位指纹
+     *
+     * @return fingerprint of 64 bits
+     */
+    public long asLong() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ElasticSearchFingerprint)) {
+            return false;
+        }
+        ElasticSearchFingerprint that = (ElasticSearchFingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void hash(Hasher hasher, Object value) {
+        if (null == value) {
+            hasher.update(TAG_NULL);
+        } else if (value instanceof String) {
+            hasher.update(TAG_STRING);
+            hasher.update((String) value);
+        } else if (value instanceof Boolean) {
+            hasher.update((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            hasher.update(TAG_LONG);
+            hasher.update(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            hasher.update(TAG_DOUBLE);
+            hasher.update(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Map) {
+            hashMap(hasher, (Map<Object, Object>) value);
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            hasher.update(TAG_LIST);
+            hasher.update(collection.size());
+            collection.forEach(item -> hash(hasher, item));
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            hasher.update(TAG_ARRAY);
+            hasher.update(array.length);
+            for (Object item : array) {
+                hash(hasher, item);
+            }
+        } else if (value instanceof ToXContent) {
+            hashXContent(hasher, (ToXContent) value);
+        } else if (value instanceof BigInteger) {
+            hasher.update(TAG_LONG);
+            hasher.update(value.toString());
+        } else {
+            hasher.update(TAG_OTHER);
+            hasher.update(value.toString());
+        }
+    }
+
+    /**
+     * Map 各项单独计算后累加, 与顺序无关
+     *
+     * @param hasher instance of Hasher
+     * @param map    Map
+     */
+    private static void hashMap(Hasher hasher, Map<Object, Object> map) {
+        long high = 0;
+        long low = 0;
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            Hasher entryHasher = new Hasher();
+            hash(entryHasher, entry.getKey());
+            hash(entryHasher, entry.getValue());
+            ElasticSearchFingerprint fingerprint = entryHasher.finish();
+            high += fingerprint.high;
+            low += fingerprint.low;
+        }
+        hasher.update(TAG_MAP);
+        hasher.update(map.size());
+        hasher.update(high);
+        hasher.update(low);
+    }
+
+    private static void hashXContent(Hasher hasher, ToXContent value) {
+        hasher.update(TAG_XCONTENT);
+        try (XContentBuilder builder = new XContentBuilder(XContentType.JSON.xContent(), hasher)) {
+            if (value.isFragment()) {
+                builder.startObject();
+            }
+            value.toXContent(builder, ToXContent.EMPTY_PARAMS);
+            if (value.isFragment()) {
+                builder.endObject();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 128位流式哈希 (MurmurHash3 x64 轮函数), 同时作为 XContent 的输出流
+     */
+    private static class Hasher extends OutputStream {
+
+        private long h1;
+
+        private long h2;
+
+        private long length;
+
+        private long buffer;
+
+        private int buffered;
+
+        void update(long k) {
+            long k1 = Long.rotateLeft(k * C1, 31) * C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            long k2 = Long.rotateLeft(k * C2, 33) * C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            length++;
+        }
+
+        void update(String value) {
+            int size = value.length();
+            update(size);
+            long word = 0;
+            for (int i = 0; i < size; i++) {
+                word = (word << 16) | value.charAt(i);
+                if ((i & 3) == 3) {
+                    update(word);
+                    word = 0;
+                }
+            }
+            if ((size & 3) != 0) {
+                update(word);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            buffer = (buffer << 8) | (b & 0xff);
+            if (++buffered == 8) {
+                update(buffer);
+                buffer = 0;
+                buffered = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (buffered > 0) {
+                update(buffer);
+                update(buffered);
+                buffer = 0;
+                buffered = 0;
+            }
+        }
+
+        ElasticSearchFingerprint finish() {
+            long r1 = h1 ^ length;
+            long r2 = h2 ^ length;
+            r1 += r2;
+            r2 += r1;
+            r1 = mix(r1);
+            r2 = mix(r2);
+            r1 += r2;
+            r2 += r1;
+            return new ElasticSearchFingerprint(r2, r1);
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb53a185a8ec3L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+
+}
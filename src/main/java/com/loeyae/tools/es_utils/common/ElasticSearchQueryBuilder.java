@@ -5,16 +5,13 @@ import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.index.query.*;
-import org.reflections.Reflections;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -36,6 +33,17 @@ public class ElasticSearchQueryBuilder {
 
     public static final NamedXContentRegistry namedXContentRegistry;
     protected static final Set<String> joinKeySet = new HashSet<>(4);
+    private static final Map<String, ElasticSearchBuilderRegistry.QueryParser> QUERY_PARSER_MAP =
+            new ConcurrentHashMap<>();
+
+    private static final String RANGE_TIME_ZONE = "time_zone";
+    private static final String RANGE_FORMAT = "format";
+    private static final String RANGE_RELATION = "relation";
+    private static final String RANGE_INCLUDE_LOWER = "include_lower";
+    private static final String RANGE_INCLUDE_UPPER = "include_upper";
+    private static final Set<String> RANGE_TEXT_KEYS = new HashSet<>(Arrays.asList(
+            RANGE_TIME_ZONE, RANGE_FORMAT, RANGE_RELATION,
+            AbstractQueryBuilder.NAME_FIELD.getPreferredName()));
 
     private ElasticSearchQueryBuilder() {
         throw new IllegalStateException("Utility class");
@@ -49,30 +57,11 @@ public class ElasticSearchQueryBuilder {
         joinKeySet.add(JOIN_TYPE_SHOULD);
         joinKeySet.add(JOIN_TYPE_FILTER);
 
-        Reflections reflections = new Reflections("org.elasticsearch.index.query");
-
-        Set<Class<? extends QueryBuilder>> queryBuilderClasses =
-                reflections.getSubTypesOf(QueryBuilder.class);
+        Map<String, String> queryBuilderClasses = ElasticSearchBuilderRegistry.queryBuilders();
         Map<String, ContextParser<Object, ? extends QueryBuilder>> parserMap = new HashMap<>(queryBuilderClasses.size());
-        queryBuilderClasses.forEach(item -> {
-            if (!Modifier.isAbstract(item.getModifiers())) {
-                try {
-                    Field field = item.getField("NAME");
-                    Object name = field.get(item);
-                    Method parser = item.getMethod("fromXContent", XContentParser.class);
-                    parserMap.put(name.toString(), (p, c) -> {
-                        try {
-                            return (QueryBuilder) parser.invoke(null, p);
-                        } catch (IllegalAccessException | InvocationTargetException e) {
-                            log.error(DEFAULT_ERROR, e);
-                        }
-                        return null;
-                    });
-                    ALL_QUERY_TYPES.add(name.toString());
-                } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException e) {
-                    log.error(DEFAULT_ERROR, e);
-                }
-            }
+        queryBuilderClasses.forEach((name, className) -> {
+            parserMap.put(name, (p, c) -> queryParser(name, className, p).fromXContent(p));
+            ALL_QUERY_TYPES.add(name);
         });
         List<NamedXContentRegistry.Entry> entries = parserMap.entrySet().stream()
                 .map(entry -> new NamedXContentRegistry.Entry(QueryBuilder.class,
@@ -82,6 +71,26 @@ public class ElasticSearchQueryBuilder {
 
     }
 
+    /**
+     * queryParser, 首次使用时绑定
+     *
+     * @param name      Name of QueryBuilder
+     * @param className class of QueryBuilder
+     * @param parser    current parser
+     * @return parser of QueryBuilder
+     */
+    private static ElasticSearchBuilderRegistry.QueryParser queryParser(String name, String className,
+                                                                        XContentParser parser) {
+        ElasticSearchBuilderRegistry.QueryParser queryParser = QUERY_PARSER_MAP.computeIfAbsent(name,
+                k -> ElasticSearchBuilderRegistry.bind(className,
+                        ElasticSearchBuilderRegistry.QUERY_PARSE_METHOD_NAME,
+                        ElasticSearchBuilderRegistry.QueryParser.class));
+        if (null == queryParser) {
+            throw new ParsingException(parser.getTokenLocation(), "[" + name + "] query is not supported");
+        }
+        return queryParser;
+    }
+
     /**
      * 构建查询
      *
@@ -89,13 +98,33 @@ public class ElasticSearchQueryBuilder {
      * @return instance of QueryBuilder
      */
     public static QueryBuilder build(Map<String, Object> query) {
+        return build(query, ElasticSearchQueryOptimizer.isEnabled());
+    }
+
+    /**
+     * 构建查询
+     *
+     * @param query    Map of query
+     * @param optimize 是否将不评分的子句改写为 filter
+     * @return instance of QueryBuilder
+     */
+    public static QueryBuilder build(Map<String, Object> query, boolean optimize) {
         if (null == query) {
             return build();
         }
+        QueryBuilder queryBuilder;
         if (query.size() == 1 && !containsJoinKey(query)) {
-            return queryBuilder(query);
+            queryBuilder = queryBuilder(query);
+        } else {
+            queryBuilder = boolQueryBuilder(query);
+        }
+        if (ElasticSearchQueryNormalizer.isEnabled()) {
+            queryBuilder = ElasticSearchQueryNormalizer.normalize(queryBuilder);
+        }
+        if (optimize) {
+            return ElasticSearchQueryOptimizer.optimize(queryBuilder).getQueryBuilder();
         }
-        return boolQueryBuilder(query);
+        return queryBuilder;
     }
 
     /**
@@ -105,12 +134,23 @@ public class ElasticSearchQueryBuilder {
      * @return instance of QueryBuilder
      */
     public static QueryBuilder build(List<Map<String, Object>> params) {
+        return build(params, ElasticSearchQueryOptimizer.isEnabled());
+    }
+
+    /**
+     * 构建查询
+     *
+     * @param params   List of query
+     * @param optimize 是否将不评分的子句改写为 filter
+     * @return instance of QueryBuilder
+     */
+    public static QueryBuilder build(List<Map<String, Object>> params, boolean optimize) {
         if (null == params) {
             return build();
         }
         Map<String, Object> query = new HashMap<>();
         query.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST, params);
-        return build(query);
+        return build(query, optimize);
     }
 
     /**
@@ -147,16 +187,18 @@ public class ElasticSearchQueryBuilder {
      * @return instance of BoolQueryBuilder
      */
     public static BoolQueryBuilder boolQueryBuilder(Map<String, Object> query) {
-        Map<String, Object> filteredQuery = null;
+        BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
         if (containsJoinKey(query)) {
-            filteredQuery = filterBoolQuery(query);
+            query.forEach((key, item) -> {
+                if (joinKeySet.contains(key)) {
+                    listQueryBuilder(item).forEach(clause -> addClause(boolQueryBuilder, key,
+                            clause));
+                }
+            });
         } else {
-            filteredQuery = computedBoolQuery(query);
+            query.forEach((key, item) -> boolQueryBuilder.must(directQuery(key, item)));
         }
-        Map<String, Object> finalFilteredQuery = filteredQuery;
-        Map<String, Object> boolQuery = new HashMap<>(1);
-        boolQuery.put(BoolQueryBuilder.NAME, finalFilteredQuery);
-        return (BoolQueryBuilder) queryBuilder(boolQuery);
+        return boolQueryBuilder;
     }
 
     /**
@@ -166,6 +208,17 @@ public class ElasticSearchQueryBuilder {
      * @return instance of QueryBuilder
      */
     public static QueryBuilder queryBuilder(Map<String, Object> query) {
+        Map.Entry<String, Object> current = query.entrySet().iterator().next();
+        return directQuery(current.getKey(), current.getValue());
+    }
+
+    /**
+     * 通过 JSON 与 XContent 解析构建查询
+     *
+     * @param query Map of query
+     * @return instance of QueryBuilder
+     */
+    public static QueryBuilder parseQueryBuilder(Map<String, Object> query) {
         Map.Entry<String, Object> current = query.entrySet().iterator().next();
         Map<String, Object> computed = computedQuery(current.getKey(), current.getValue());
         JSONObject jsonObject = new JSONObject(computed);
@@ -181,6 +234,173 @@ public class ElasticSearchQueryBuilder {
         return null;
     }
 
+    /**
+     * directQuery
+     *
+     * 与 computedQuery 规则一致, 直接构造 QueryBuilder, 仅原生DSL使用 XContent 解析
+     *
+     * @param key   Name of QueryBuilder
+     * @param query query for QueryBuilder
+     * @return instance of QueryBuilder
+     */
+    @SuppressWarnings("unchecked")
+    protected static QueryBuilder directQuery(String key, Object query) {
+        if (ALL_QUERY_TYPES.contains(key)) {
+            return parseQueryBuilder(Collections.singletonMap(key, query));
+        }
+        if (query instanceof Object[]) {
+            return termsQueryBuilder(key, (Object[]) query);
+        }
+        if (query instanceof List) {
+            return rangeQueryBuilder(key, (List<Object>) query);
+        }
+        if (query instanceof Map) {
+            return rangeQueryBuilder(key, (Map<String, Object>) query);
+        }
+        return termQueryBuilder(key, query);
+    }
+
+    /**
+     * termQueryBuilder
+     *
+     * @param key   field name
+     * @param query value
+     * @return instance of TermQueryBuilder
+     */
+    protected static QueryBuilder termQueryBuilder(String key, Object query) {
+        return QueryBuilders.termQuery(key, query.toString());
+    }
+
+    /**
+     * termsQueryBuilder
+     *
+     * @param key   field name
+     * @param query Array of values
+     * @return instance of QueryBuilder
+     */
+    protected static QueryBuilder termsQueryBuilder(String key, Object[] query) {
+        for (Object item : query) {
+            if (!isScalar(item)) {
+                return parseQueryBuilder(Collections.singletonMap(key, query));
+            }
+        }
+        return QueryBuilders.termsQuery(key, query);
+    }
+
+    /**
+     * rangeQueryBuilder
+     *
+     * @param key   field name
+     * @param query List of [gte, lte]
+     * @return instance of QueryBuilder
+     */
+    protected static QueryBuilder rangeQueryBuilder(String key, List<Object> query) {
+        Iterator<Object> iterator = query.iterator();
+        Object from = iterator.next();
+        boolean bounded = iterator.hasNext();
+        Object to = bounded ? iterator.next() : null;
+        if (!isScalar(from) || !isScalar(to)) {
+            return parseQueryBuilder(Collections.singletonMap(key, query));
+        }
+        RangeQueryBuilder rangeQueryBuilder = QueryBuilders.rangeQuery(key).gte(from);
+        if (bounded) {
+            rangeQueryBuilder.lte(to);
+        }
+        return rangeQueryBuilder;
+    }
+
+    /**
+     * rangeQueryBuilder
+     *
+     * @param key   field name
+     * @param query Map of range
+     * @return instance of QueryBuilder
+     */
+    protected static QueryBuilder rangeQueryBuilder(String key, Map<String, Object> query) {
+        RangeQueryBuilder rangeQueryBuilder = QueryBuilders.rangeQuery(key);
+        for (Map.Entry<String, Object> entry : query.entrySet()) {
+            if (!applyRange(rangeQueryBuilder, String.valueOf(entry.getKey()), entry.getValue())) {
+                return parseQueryBuilder(Collections.singletonMap(key, query));
+            }
+        }
+        return rangeQueryBuilder;
+    }
+
+    /**
+     * applyRange
+     *
+     * @param builder instance of RangeQueryBuilder
+     * @param key     range parameter
+     * @param item    value
+     * @return false if the parameter must be handled by the parser
+     */
+    private static boolean applyRange(RangeQueryBuilder builder, String key, Object item) {
+        if (RANGE_TEXT_KEYS.contains(key)) {
+            if (!(item instanceof String)) {
+                return false;
+            }
+            if (RANGE_TIME_ZONE.equals(key)) {
+                builder.timeZone((String) item);
+            } else if (RANGE_FORMAT.equals(key)) {
+                builder.format((String) item);
+            } else if (RANGE_RELATION.equals(key)) {
+                builder.relation((String) item);
+            } else {
+                builder.queryName((String) item);
+            }
+            return true;
+        }
+        if (RANGE_INCLUDE_LOWER.equals(key) || RANGE_INCLUDE_UPPER.equals(key)) {
+            if (!(item instanceof Boolean)) {
+                return false;
+            }
+            if (RANGE_INCLUDE_LOWER.equals(key)) {
+                builder.includeLower((Boolean) item);
+            } else {
+                builder.includeUpper((Boolean) item);
+            }
+            return true;
+        }
+        if (AbstractQueryBuilder.BOOST_FIELD.getPreferredName().equals(key)) {
+            if (!(item instanceof Number)) {
+                return false;
+            }
+            builder.boost(((Number) item).floatValue());
+            return true;
+        }
+        if (!isScalar(item)) {
+            return false;
+        }
+        if (RangeQueryBuilder.GTE_FIELD.getPreferredName().equals(key)) {
+            builder.gte(item);
+        } else if (RangeQueryBuilder.LTE_FIELD.getPreferredName().equals(key)) {
+            builder.lte(item);
+        } else if (RangeQueryBuilder.GT_FIELD.getPreferredName().equals(key)) {
+            builder.gt(item);
+        } else if (RangeQueryBuilder.LT_FIELD.getPreferredName().equals(key)) {
+            builder.lt(item);
+        } else if (RangeQueryBuilder.FROM_FIELD.getPreferredName().equals(key)) {
+            builder.from(item);
+        } else if (RangeQueryBuilder.TO_FIELD.getPreferredName().equals(key)) {
+            builder.to(item);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 是否可以直接写入 QueryBuilder 的简单值
+     *
+     * @param value value
+     * @return true|false
+     */
+    private static boolean isScalar(Object value) {
+        return null == value || value instanceof String || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Short || value instanceof Byte || value instanceof Boolean;
+    }
+
     /**
      * computedBoolQuery
      *
@@ -279,6 +499,51 @@ public class ElasticSearchQueryBuilder {
         return mapList;
     }
 
+    /**
+     * listQueryBuilder
+     *
+     * @param query query
+     * @return List of QueryBuilder
+     */
+    @SuppressWarnings("unchecked")
+    protected static List<QueryBuilder> listQueryBuilder(Object query) {
+        List<QueryBuilder> queryBuilderList = new ArrayList<>();
+        if (query instanceof List) {
+            ((List<?>) query).forEach(item -> queryBuilderList.addAll(listQueryBuilder(item)));
+            return queryBuilderList;
+        }
+        if (query instanceof Map) {
+            ((Map<String, Object>) query).forEach((key, item) -> queryBuilderList.add(directQuery(key,
+                    item)));
+            return queryBuilderList;
+        }
+        return queryBuilderList;
+    }
+
+    /**
+     * 按连接类型添加子查询
+     *
+     * @param boolQueryBuilder instance of BoolQueryBuilder
+     * @param joinType         join type
+     * @param queryBuilder     instance of QueryBuilder
+     */
+    protected static void addClause(BoolQueryBuilder boolQueryBuilder, String joinType,
+                                    QueryBuilder queryBuilder) {
+        switch (joinType) {
+            case JOIN_TYPE_MUST_NOT:
+                boolQueryBuilder.mustNot(queryBuilder);
+                break;
+            case JOIN_TYPE_SHOULD:
+                boolQueryBuilder.should(queryBuilder);
+                break;
+            case JOIN_TYPE_FILTER:
+                boolQueryBuilder.filter(queryBuilder);
+                break;
+            default:
+                boolQueryBuilder.must(queryBuilder);
+        }
+    }
+
     /**
      * 判断是否存在连接关键词
      *
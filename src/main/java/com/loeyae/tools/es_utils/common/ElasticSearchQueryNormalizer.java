@@ -0,0 +1,336 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.index.query.*;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * ElasticSearch Query Normalizer.
+ *
+ * 规范化 bool 查询: 展开单子句及可结合的 bool, should/must_not 中同字段的 term 合并为 terms,
+ * must/filter 中同字段的数值 range 取交集, 去重并按规范顺序排列子句.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchQueryNormalizer {
+
+    private static volatile boolean enabled = false;
+
+    private ElasticSearchQueryNormalizer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 全局开关
+     *
+     * @return enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置全局开关
+     *
+     * @param enabled enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        ElasticSearchQueryNormalizer.enabled = enabled;
+    }
+
+    /**
+     * 规范化查询
+     *
+     * @param queryBuilder instance of QueryBuilder
+     * @return normalized QueryBuilder
+     */
+    public static QueryBuilder normalize(QueryBuilder queryBuilder) {
+        if (!(queryBuilder instanceof BoolQueryBuilder)) {
+            return queryBuilder;
+        }
+        BoolQueryBuilder boolQueryBuilder = normalizeBool((BoolQueryBuilder) queryBuilder);
+        if (isPlain(boolQueryBuilder) && clauseCount(boolQueryBuilder) == 1) {
+            if (boolQueryBuilder.must().size() == 1) {
+                return boolQueryBuilder.must().get(0);
+            }
+            if (boolQueryBuilder.should().size() == 1) {
+                return boolQueryBuilder.should().get(0);
+            }
+        }
+        return boolQueryBuilder;
+    }
+
+    /**
+     * normalizeBool
+     *
+     * @param boolQueryBuilder instance of BoolQueryBuilder
+     * @return normalized BoolQueryBuilder
+     */
+    protected static BoolQueryBuilder normalizeBool(BoolQueryBuilder boolQueryBuilder) {
+        Map<String, List<QueryBuilder>> clauses = new HashMap<>(4);
+        clauses.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST, new ArrayList<>());
+        clauses.put(ElasticSearchQueryBuilder.JOIN_TYPE_FILTER, new ArrayList<>());
+        clauses.put(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD, new ArrayList<>());
+        clauses.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT, new ArrayList<>());
+        boolQueryBuilder.must().forEach(item -> lift(clauses, ElasticSearchQueryBuilder.JOIN_TYPE_MUST, item));
+        boolQueryBuilder.filter().forEach(item -> lift(clauses, ElasticSearchQueryBuilder.JOIN_TYPE_FILTER, item));
+        boolQueryBuilder.should().forEach(item -> lift(clauses, ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD, item));
+        boolQueryBuilder.mustNot().forEach(item -> lift(clauses, ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT,
+                item));
+        boolean countShould = null != boolQueryBuilder.minimumShouldMatch();
+        List<QueryBuilder> must = canonical(intersectRanges(clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_MUST)),
+                true);
+        List<QueryBuilder> filter = canonical(intersectRanges(
+                clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_FILTER)), true);
+        List<QueryBuilder> should = countShould ?
+                canonical(clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD), false) :
+                canonical(mergeTerms(clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD)), true);
+        List<QueryBuilder> mustNot = canonical(mergeTerms(
+                clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT)), true);
+        BoolQueryBuilder normalized = QueryBuilders.boolQuery()
+                .boost(boolQueryBuilder.boost())
+                .queryName(boolQueryBuilder.queryName())
+                .minimumShouldMatch(boolQueryBuilder.minimumShouldMatch())
+                .adjustPureNegative(boolQueryBuilder.adjustPureNegative());
+        must.forEach(normalized::must);
+        filter.forEach(normalized::filter);
+        should.forEach(normalized::should);
+        mustNot.forEach(normalized::mustNot);
+        boolean required = !boolQueryBuilder.must().isEmpty() || !boolQueryBuilder.filter().isEmpty();
+        if (!countShould && required && must.isEmpty() && filter.isEmpty() && !should.isEmpty()) {
+            // 只含 must_not 的子 bool 展开后没有 must/filter, 需显式保持 should 可选
+            normalized.minimumShouldMatch("0");
+        }
+        return normalized;
+    }
+
+    /**
+     * 展开子 bool 查询
+     *
+     * @param clauses clauses of parent, by occur
+     * @param occur   occur of clause in parent
+     * @param clause  clause
+     */
+    private static void lift(Map<String, List<QueryBuilder>> clauses, String occur, QueryBuilder clause) {
+        if (!(clause instanceof BoolQueryBuilder)) {
+            clauses.get(occur).add(clause);
+            return;
+        }
+        BoolQueryBuilder child = normalizeBool((BoolQueryBuilder) clause);
+        if (isPlain(child) && clauseCount(child) > 0) {
+            boolean conjunction = ElasticSearchQueryBuilder.JOIN_TYPE_MUST.equals(occur)
+                    || ElasticSearchQueryBuilder.JOIN_TYPE_FILTER.equals(occur);
+            if (conjunction && child.should().isEmpty()) {
+                clauses.get(occur).addAll(child.must());
+                clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_FILTER).addAll(child.filter());
+                clauses.get(ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT).addAll(child.mustNot());
+                return;
+            }
+            if (clauseCount(child) == 1) {
+                String childOccur = occurOf(child);
+                String target = liftTarget(occur, childOccur);
+                if (null != target) {
+                    clauses.get(target).add(clausesOf(child, childOccur).get(0));
+                    return;
+                }
+            }
+        }
+        clauses.get(occur).add(child);
+    }
+
+    /**
+     * 单子句 bool 展开到父查询后的 occur
+     *
+     * @param occur      occur of bool in parent
+     * @param childOccur occur of the only clause in bool
+     * @return occur in parent, null if it can not be lifted
+     */
+    private static String liftTarget(String occur, String childOccur) {
+        boolean positive = !ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT.equals(childOccur);
+        boolean scoring = ElasticSearchQueryBuilder.JOIN_TYPE_MUST.equals(childOccur)
+                || ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD.equals(childOccur);
+        switch (occur) {
+            case ElasticSearchQueryBuilder.JOIN_TYPE_MUST:
+                return scoring ? occur : childOccur;
+            case ElasticSearchQueryBuilder.JOIN_TYPE_FILTER:
+                return positive ? occur : childOccur;
+            case ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD:
+                return scoring ? occur : null;
+            default:
+                return positive ? occur : null;
+        }
+    }
+
+    /**
+     * 合并同字段的 term/terms (析取语义)
+     *
+     * @param clauses should or must_not clauses
+     * @return merged clauses
+     */
+    protected static List<QueryBuilder> mergeTerms(List<QueryBuilder> clauses) {
+        Map<String, List<QueryBuilder>> fields = new LinkedHashMap<>();
+        List<QueryBuilder> merged = new ArrayList<>(clauses.size());
+        clauses.forEach(item -> {
+            if (isPlain(item) && (item instanceof TermQueryBuilder
+                    || (item instanceof TermsQueryBuilder && null == ((TermsQueryBuilder) item).termsLookup()))) {
+                fields.computeIfAbsent(fieldOf(item), k -> new ArrayList<>()).add(item);
+            } else {
+                merged.add(item);
+            }
+        });
+        fields.forEach((field, items) -> {
+            if (items.size() == 1) {
+                merged.add(items.get(0));
+                return;
+            }
+            Set<Object> values = new TreeSet<>(Comparator.comparing(String::valueOf));
+            items.forEach(item -> {
+                if (item instanceof TermQueryBuilder) {
+                    values.add(((TermQueryBuilder) item).value());
+                } else {
+                    values.addAll(((TermsQueryBuilder) item).values());
+                }
+            });
+            merged.add(QueryBuilders.termsQuery(field, values));
+        });
+        return merged;
+    }
+
+    /**
+     * 同字段数值 range 取交集 (合取语义)
+     *
+     * @param clauses must or filter clauses
+     * @return merged clauses
+     */
+    protected static List<QueryBuilder> intersectRanges(List<QueryBuilder> clauses) {
+        Map<String, RangeQueryBuilder> fields = new LinkedHashMap<>();
+        List<QueryBuilder> merged = new ArrayList<>(clauses.size());
+        clauses.forEach(item -> {
+            if (item instanceof RangeQueryBuilder && isNumericRange((RangeQueryBuilder) item)) {
+                fields.merge(fieldOf(item), (RangeQueryBuilder) item, ElasticSearchQueryNormalizer::intersect);
+            } else {
+                merged.add(item);
+            }
+        });
+        merged.addAll(fields.values());
+        return merged;
+    }
+
+    private static RangeQueryBuilder intersect(RangeQueryBuilder left, RangeQueryBuilder right) {
+        RangeQueryBuilder rangeQueryBuilder = QueryBuilders.rangeQuery(left.fieldName());
+        int lower = compareBound(left.from(), right.from(), true);
+        if (lower > 0 || (lower == 0 && !left.includeLower())) {
+            rangeQueryBuilder.from(left.from(), left.includeLower());
+        } else {
+            rangeQueryBuilder.from(right.from(), right.includeLower());
+        }
+        int upper = compareBound(left.to(), right.to(), false);
+        if (upper < 0 || (upper == 0 && !left.includeUpper())) {
+            rangeQueryBuilder.to(left.to(), left.includeUpper());
+        } else {
+            rangeQueryBuilder.to(right.to(), right.includeUpper());
+        }
+        return rangeQueryBuilder;
+    }
+
+    /**
+     * 比较边界, null 为无界
+     *
+     * @param left  bound
+     * @param right bound
+     * @param lower lower bound or upper bound
+     * @return compare result
+     */
+    private static int compareBound(Object left, Object right, boolean lower) {
+        if (null == left && null == right) {
+            return 0;
+        }
+        if (null == left) {
+            return lower ? -1 : 1;
+        }
+        if (null == right) {
+            return lower ? 1 : -1;
+        }
+        return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+    }
+
+    private static boolean isNumericRange(RangeQueryBuilder rangeQueryBuilder) {
+        return isPlain(rangeQueryBuilder) && null == rangeQueryBuilder.format()
+                && null == rangeQueryBuilder.timeZone() && null == rangeQueryBuilder.relation()
+                && (null == rangeQueryBuilder.from() || rangeQueryBuilder.from() instanceof Number)
+                && (null == rangeQueryBuilder.to() || rangeQueryBuilder.to() instanceof Number);
+    }
+
+    /**
+     * 去重并按规范顺序排列
+     *
+     * @param clauses clauses
+     * @param dedupe  remove duplicates
+     * @return canonical clauses
+     */
+    protected static List<QueryBuilder> canonical(List<QueryBuilder> clauses, boolean dedupe) {
+        if (clauses.size() < 2) {
+            return clauses;
+        }
+        Collection<QueryBuilder> distinct = dedupe ? new LinkedHashSet<>(clauses) : clauses;
+        Map<QueryBuilder, String> keys = new IdentityHashMap<>(distinct.size());
+        distinct.forEach(item -> keys.put(item, Strings.toString(item)));
+        List<QueryBuilder> sorted = new ArrayList<>(distinct);
+        sorted.sort(Comparator.comparing(keys::get));
+        return sorted;
+    }
+
+    private static boolean isPlain(QueryBuilder queryBuilder) {
+        if (queryBuilder.boost() != AbstractQueryBuilder.DEFAULT_BOOST || null != queryBuilder.queryName()) {
+            return false;
+        }
+        return !(queryBuilder instanceof BoolQueryBuilder)
+                || null == ((BoolQueryBuilder) queryBuilder).minimumShouldMatch();
+    }
+
+    private static int clauseCount(BoolQueryBuilder boolQueryBuilder) {
+        return boolQueryBuilder.must().size() + boolQueryBuilder.filter().size()
+                + boolQueryBuilder.should().size() + boolQueryBuilder.mustNot().size();
+    }
+
+    private static String occurOf(BoolQueryBuilder boolQueryBuilder) {
+        if (!boolQueryBuilder.must().isEmpty()) {
+            return ElasticSearchQueryBuilder.JOIN_TYPE_MUST;
+        }
+        if (!boolQueryBuilder.filter().isEmpty()) {
+            return ElasticSearchQueryBuilder.JOIN_TYPE_FILTER;
+        }
+        if (!boolQueryBuilder.should().isEmpty()) {
+            return ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD;
+        }
+        return ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT;
+    }
+
+    private static List<QueryBuilder> clausesOf(BoolQueryBuilder boolQueryBuilder, String occur) {
+        switch (occur) {
+            case ElasticSearchQueryBuilder.JOIN_TYPE_MUST:
+                return boolQueryBuilder.must();
+            case ElasticSearchQueryBuilder.JOIN_TYPE_FILTER:
+                return boolQueryBuilder.filter();
+            case ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD:
+                return boolQueryBuilder.should();
+            default:
+                return boolQueryBuilder.mustNot();
+        }
+    }
+
+    private static String fieldOf(QueryBuilder queryBuilder) {
+        if (queryBuilder instanceof TermQueryBuilder) {
+            return ((TermQueryBuilder) queryBuilder).fieldName();
+        }
+        if (queryBuilder instanceof TermsQueryBuilder) {
+            return ((TermsQueryBuilder) queryBuilder).fieldName();
+        }
+        return ((RangeQueryBuilder) queryBuilder).fieldName();
+    }
+
+}
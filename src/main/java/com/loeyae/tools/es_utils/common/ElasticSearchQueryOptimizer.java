@@ -0,0 +1,160 @@
+package com.loeyae.tools.es_utils.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.index.query.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ElasticSearch Query Optimizer.
+ *
+ * 将不需要评分的 must 子句(term、terms、range、exists、ids)移到 filter, 使用 filter 缓存;
+ * 整个查询都不需要评分时使用 constant_score 包装.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchQueryOptimizer {
+
+    private static volatile boolean enabled = false;
+
+    private ElasticSearchQueryOptimizer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 全局开关
+     *
+     * @return enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置全局开关
+     *
+     * @param enabled enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        ElasticSearchQueryOptimizer.enabled = enabled;
+    }
+
+    /**
+     * 优化查询
+     *
+     * @param queryBuilder instance of QueryBuilder
+     * @return optimized query and rewrites
+     */
+    public static Report optimize(QueryBuilder queryBuilder) {
+        List<String> rewrites = new ArrayList<>();
+        QueryBuilder optimized = queryBuilder;
+        if (queryBuilder instanceof BoolQueryBuilder) {
+            optimized = rewrite((BoolQueryBuilder) queryBuilder, "", rewrites);
+        }
+        if (isNonScoring(optimized)) {
+            rewrites.add(optimized.getName() + " -> constant_score");
+            optimized = QueryBuilders.constantScoreQuery(optimized);
+        }
+        if (!rewrites.isEmpty()) {
+            log.debug("query rewrites: {}", rewrites);
+        }
+        return new Report(optimized, rewrites);
+    }
+
+    /**
+     * rewrite
+     *
+     * @param boolQueryBuilder instance of BoolQueryBuilder
+     * @param path             path of bool query, for report
+     * @param rewrites         rewrites
+     * @return instance of BoolQueryBuilder
+     */
+    protected static BoolQueryBuilder rewrite(BoolQueryBuilder boolQueryBuilder, String path,
+                                              List<String> rewrites) {
+        BoolQueryBuilder rewritten = QueryBuilders.boolQuery()
+                .boost(boolQueryBuilder.boost())
+                .queryName(boolQueryBuilder.queryName())
+                .minimumShouldMatch(boolQueryBuilder.minimumShouldMatch())
+                .adjustPureNegative(boolQueryBuilder.adjustPureNegative());
+        List<QueryBuilder> must = boolQueryBuilder.must();
+        for (int i = 0; i < must.size(); i++) {
+            QueryBuilder clause = rewriteClause(must.get(i),
+                    path + ElasticSearchQueryBuilder.JOIN_TYPE_MUST + "[" + i + "].", rewrites);
+            if (isNonScoring(clause)) {
+                rewrites.add(path + ElasticSearchQueryBuilder.JOIN_TYPE_MUST + "[" + i + "] " +
+                        clause.getName() + " -> " + ElasticSearchQueryBuilder.JOIN_TYPE_FILTER);
+                rewritten.filter(clause);
+            } else {
+                rewritten.must(clause);
+            }
+        }
+        List<QueryBuilder> should = boolQueryBuilder.should();
+        for (int i = 0; i < should.size(); i++) {
+            rewritten.should(rewriteClause(should.get(i),
+                    path + ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD + "[" + i + "].", rewrites));
+        }
+        boolQueryBuilder.filter().forEach(rewritten::filter);
+        boolQueryBuilder.mustNot().forEach(rewritten::mustNot);
+        return rewritten;
+    }
+
+    private static QueryBuilder rewriteClause(QueryBuilder clause, String path, List<String> rewrites) {
+        if (clause instanceof BoolQueryBuilder) {
+            return rewrite((BoolQueryBuilder) clause, path, rewrites);
+        }
+        return clause;
+    }
+
+    /**
+     * 是否不需要评分
+     *
+     * @param queryBuilder instance of QueryBuilder
+     * @return true if score is not used
+     */
+    protected static boolean isNonScoring(QueryBuilder queryBuilder) {
+        if (queryBuilder.boost() != AbstractQueryBuilder.DEFAULT_BOOST) {
+            return false;
+        }
+        if (queryBuilder instanceof BoolQueryBuilder) {
+            BoolQueryBuilder boolQueryBuilder = (BoolQueryBuilder) queryBuilder;
+            return boolQueryBuilder.must().isEmpty() && boolQueryBuilder.should().isEmpty()
+                    && !boolQueryBuilder.filter().isEmpty();
+        }
+        return queryBuilder instanceof TermQueryBuilder || queryBuilder instanceof TermsQueryBuilder
+                || queryBuilder instanceof RangeQueryBuilder || queryBuilder instanceof ExistsQueryBuilder
+                || queryBuilder instanceof IdsQueryBuilder;
+    }
+
+    /**
+     * 优化结果
+     */
+    public static class Report {
+
+        private final QueryBuilder queryBuilder;
+
+        private final List<String> rewrites;
+
+        Report(QueryBuilder queryBuilder, List<String> rewrites) {
+            this.queryBuilder = queryBuilder;
+            this.rewrites = Collections.unmodifiableList(rewrites);
+        }
+
+        public QueryBuilder getQueryBuilder() {
+            return queryBuilder;
+        }
+
+        public List<String> getRewrites() {
+            return rewrites;
+        }
+
+        public boolean isRewritten() {
+            return !rewrites.isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ElasticSearch Query Template.
+ *
+ * 按查询结构(key、嵌套层级、值类型)编译查询计划, 相同结构的查询只绑定参数值,
+ * 跳过逐项的类型判断, 直接构造QueryBuilder.
+ *
+ * 按需使用, ElasticSearchQueryBuilder.build 不经过模板: 叶子节点与直接构造使用相同的方法,
+ * 计算结构与查找缓存的开销大于省去的类型判断.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchQueryTemplate {
+
+    public static final int DEFAULT_CACHE_CAPACITY = 512;
+
+    private static final char SHAPE_SINGLE = '1';
+    private static final char SHAPE_COMPUTED_BOOL = 'B';
+    private static final char SHAPE_JOIN_BOOL = 'J';
+    private static final char KIND_RAW = 'Q';
+    private static final char KIND_TERM = 'T';
+    private static final char KIND_TERMS = 'A';
+    private static final char KIND_RANGE_LIST = 'L';
+    private static final char KIND_RANGE_MAP = 'M';
+    private static final char KIND_IGNORED = '_';
+
+    private static final TemplateCache CACHE = new TemplateCache(DEFAULT_CACHE_CAPACITY);
+
+    private final RootPlan plan;
+
+    private ElasticSearchQueryTemplate(RootPlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * 构建查询
+     *
+     * @param query Map of query
+     * @return instance of QueryBuilder
+     */
+    public static QueryBuilder build(Map<String, Object> query) {
+        String shape = shape(query);
+        ElasticSearchQueryTemplate template = CACHE.get(shape);
+        if (null == template) {
+            template = new ElasticSearchQueryTemplate(compile(query));
+            CACHE.put(shape, template);
+        }
+        return template.plan.bind(query);
+    }
+
+    /**
+     * 缓存命中次数
+     *
+     * @return count of hits
+     */
+    public static long hitCount() {
+        return CACHE.hits.get();
+    }
+
+    /**
+     * 缓存未命中次数
+     *
+     * @return count of misses
+     */
+    public static long missCount() {
+        return CACHE.misses.get();
+    }
+
+    /**
+     * 当前缓存的模板数
+     *
+     * @return size of cache
+     */
+    public static int cacheSize() {
+        return CACHE.size();
+    }
+
+    /**
+     * 设置缓存容量, 0 表示不缓存
+     *
+     * @param capacity max templates
+     */
+    public static void setCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        CACHE.resize(capacity);
+    }
+
+    /**
+     * 清空缓存及计数
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * 计算查询结构
+     *
+     * @param query Map of query
+     * @return shape of query
+     */
+    protected static String shape(Map<String, Object> query) {
+        StringBuilder builder = new StringBuilder(64);
+        if (query.size() == 1 && !ElasticSearchQueryBuilder.containsJoinKey(query)) {
+            builder.append(SHAPE_SINGLE);
+            Map.Entry<String, Object> entry = query.entrySet().iterator().next();
+            leafShape(builder, entry.getKey(), entry.getValue());
+        } else if (ElasticSearchQueryBuilder.containsJoinKey(query)) {
+            builder.append(SHAPE_JOIN_BOOL);
+            query.forEach((key, item) -> {
+                appendKey(builder, key);
+                if (ElasticSearchQueryBuilder.joinKeySet.contains(key)) {
+                    clauseShape(builder, item);
+                } else {
+                    builder.append(KIND_IGNORED);
+                }
+            });
+        } else {
+            builder.append(SHAPE_COMPUTED_BOOL);
+            query.forEach((key, item) -> leafShape(builder, key, item));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * clauseShape
+     *
+     * @param builder instance of StringBuilder
+     * @param query   clauses of join key
+     */
+    @SuppressWarnings("unchecked")
+    private static void clauseShape(StringBuilder builder, Object query) {
+        if (query instanceof List) {
+            builder.append('[');
+            ((List<?>) query).forEach(item -> clauseShape(builder, item));
+            builder.append(']');
+        } else if (query instanceof Map) {
+            builder.append('{');
+            ((Map<String, Object>) query).forEach((key, item) -> leafShape(builder, key, item));
+            builder.append('}');
+        } else {
+            builder.append(KIND_IGNORED);
+        }
+    }
+
+    /**
+     * leafShape
+     *
+     * @param builder instance of StringBuilder
+     * @param key     key of query
+     * @param query   value of query
+     */
+    private static void leafShape(StringBuilder builder, String key, Object query) {
+        appendKey(builder, key);
+        builder.append(kindOf(key, query));
+    }
+
+    private static void appendKey(StringBuilder builder, String key) {
+        builder.append(key.length()).append(':').append(key);
+    }
+
+    /**
+     * 值类型, 与 ElasticSearchQueryBuilder.computedQuery 的判断顺序一致
+     *
+     * @param key   key of query
+     * @param query value of query
+     * @return kind
+     */
+    private static char kindOf(String key, Object query) {
+        if (ElasticSearchQueryBuilder.ALL_QUERY_TYPES.contains(key)) {
+            return KIND_RAW;
+        }
+        if (query instanceof Object[]) {
+            return KIND_TERMS;
+        }
+        if (query instanceof List) {
+            return KIND_RANGE_LIST;
+        }
+        if (query instanceof Map) {
+            return KIND_RANGE_MAP;
+        }
+        return KIND_TERM;
+    }
+
+    /**
+     * 编译查询计划
+     *
+     * @param query Map of query
+     * @return root plan
+     */
+    private static RootPlan compile(Map<String, Object> query) {
+        if (query.size() == 1 && !ElasticSearchQueryBuilder.containsJoinKey(query)) {
+            Map.Entry<String, Object> entry = query.entrySet().iterator().next();
+            return new SinglePlan(compileLeaf(entry.getKey(), entry.getValue()));
+        }
+        boolean join = ElasticSearchQueryBuilder.containsJoinKey(query);
+        String[] occurs = new String[query.size()];
+        ClausePlan[] clauses = new ClausePlan[query.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : query.entrySet()) {
+            if (!join) {
+                occurs[i] = ElasticSearchQueryBuilder.JOIN_TYPE_MUST;
+                clauses[i] = new LeafClause(compileLeaf(entry.getKey(), entry.getValue()));
+            } else if (ElasticSearchQueryBuilder.joinKeySet.contains(entry.getKey())) {
+                occurs[i] = entry.getKey();
+                clauses[i] = compileClause(entry.getValue());
+            }
+            i++;
+        }
+        return new BoolPlan(occurs, clauses);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClausePlan compileClause(Object query) {
+        if (query instanceof List) {
+            List<?> list = (List<?>) query;
+            ClausePlan[] items = new ClausePlan[list.size()];
+            int i = 0;
+            for (Object item : list) {
+                items[i++] = compileClause(item);
+            }
+            return new ListClause(items);
+        }
+        if (query instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) query;
+            LeafPlan[] leaves = new LeafPlan[map.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                leaves[i++] = compileLeaf(entry.getKey(), entry.getValue());
+            }
+            return new MapClause(leaves);
+        }
+        return (value, clauses) -> { };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static LeafPlan compileLeaf(String key, Object query) {
+        switch (kindOf(key, query)) {
+            case KIND_TERM:
+                return value -> ElasticSearchQueryBuilder.termQueryBuilder(key, value);
+            case KIND_TERMS:
+                return value -> ElasticSearchQueryBuilder.termsQueryBuilder(key, (Object[]) value);
+            case KIND_RANGE_LIST:
+                return value -> ElasticSearchQueryBuilder.rangeQueryBuilder(key, (List<Object>) value);
+            case KIND_RANGE_MAP:
+                return value -> ElasticSearchQueryBuilder.rangeQueryBuilder(key,
+                        (Map<String, Object>) value);
+            default:
+                return value -> ElasticSearchQueryBuilder.parseQueryBuilder(
+                        Collections.singletonMap(key, value));
+        }
+    }
+
+    private interface RootPlan {
+        QueryBuilder bind(Map<String, Object> query);
+    }
+
+    private interface LeafPlan {
+        QueryBuilder bind(Object value);
+    }
+
+    private interface ClausePlan {
+        void collect(Object value, List<QueryBuilder> clauses);
+    }
+
+    private static class SinglePlan implements RootPlan {
+
+        private final LeafPlan leaf;
+
+        SinglePlan(LeafPlan leaf) {
+            this.leaf = leaf;
+        }
+
+        @Override
+        public QueryBuilder bind(Map<String, Object> query) {
+            return leaf.bind(query.values().iterator().next());
+        }
+    }
+
+    private static class BoolPlan implements RootPlan {
+
+        private final String[] occurs;
+
+        private final ClausePlan[] clauses;
+
+        BoolPlan(String[] occurs, ClausePlan[] clauses) {
+            this.occurs = occurs;
+            this.clauses = clauses;
+        }
+
+        @Override
+        public QueryBuilder bind(Map<String, Object> query) {
+            BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
+            List<QueryBuilder> collected = new ArrayList<>();
+            int i = 0;
+            for (Object item : query.values()) {
+                String occur = occurs[i];
+                if (null != occur) {
+                    collected.clear();
+                    clauses[i].collect(item, collected);
+                    collected.forEach(clause -> ElasticSearchQueryBuilder.addClause(boolQueryBuilder, occur,
+                            clause));
+                }
+                i++;
+            }
+            return boolQueryBuilder;
+        }
+    }
+
+    private static class LeafClause implements ClausePlan {
+
+        private final LeafPlan leaf;
+
+        LeafClause(LeafPlan leaf) {
+            this.leaf = leaf;
+        }
+
+        @Override
+        public void collect(Object value, List<QueryBuilder> clauses) {
+            clauses.add(leaf.bind(value));
+        }
+    }
+
+    private static class ListClause implements ClausePlan {
+
+        private final ClausePlan[] items;
+
+        ListClause(ClausePlan[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public void collect(Object value, List<QueryBuilder> clauses) {
+            int i = 0;
+            for (Object item : (List<?>) value) {
+                items[i++].collect(item, clauses);
+            }
+        }
+    }
+
+    private static class MapClause implements ClausePlan {
+
+        private final LeafPlan[] leaves;
+
+        MapClause(LeafPlan[] leaves) {
+            this.leaves = leaves;
+        }
+
+        @Override
+        public void collect(Object value, List<QueryBuilder> clauses) {
+            int i = 0;
+            for (Object item : ((Map<?, ?>) value).values()) {
+                clauses.add(leaves[i++].bind(item));
+            }
+        }
+    }
+
+    /**
+     * LRU cache of templates
+     */
+    private static class TemplateCache {
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private volatile int capacity;
+
+        private final LinkedHashMap<String, ElasticSearchQueryTemplate> templates;
+
+        TemplateCache(int capacity) {
+            this.capacity = capacity;
+            this.templates = new LinkedHashMap<String, ElasticSearchQueryTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ElasticSearchQueryTemplate> eldest) {
+                    return size() > TemplateCache.this.capacity;
+                }
+            };
+        }
+
+        synchronized ElasticSearchQueryTemplate get(String shape) {
+            ElasticSearchQueryTemplate template = templates.get(shape);
+            if (null == template) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return template;
+        }
+
+        synchronized void put(String shape, ElasticSearchQueryTemplate template) {
+            if (capacity > 0) {
+                templates.put(shape, template);
+            }
+        }
+
+        synchronized int size() {
+            return templates.size();
+        }
+
+        synchronized void resize(int capacity) {
+            this.capacity = capacity;
+            Iterator<String> iterator = templates.keySet().iterator();
+            while (templates.size() > capacity && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+
+        synchronized void clear() {
+            templates.clear();
+            hits.set(0);
+            misses.set(0);
+        }
+    }
+
+}
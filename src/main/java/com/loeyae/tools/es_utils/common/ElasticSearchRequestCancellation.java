@@ -0,0 +1,144 @@
+package com.loeyae.tools.es_utils.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.elasticsearch.client.RequestOptions;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ElasticSearch Request Cancellation.
+ *
+ * 异步请求通过请求头登记, 拦截器记录请求的 HttpContext, 取消时关闭该请求使用的连接;
+ * 取消后的重试请求在拦截器中直接失败.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchRequestCancellation {
+
+    private static final String DEFAULT_ERROR = "ES Utils Error: ";
+    public static final String HEADER_NAME = "X-ES-Utils-Request";
+
+    private static final Map<String, Handle> HANDLES = new ConcurrentHashMap<>();
+
+    /**
+     * 需要添加到 HttpAsyncClientBuilder
+     */
+    public static final HttpRequestInterceptor INTERCEPTOR = (request, context) -> {
+        Header header = request.getFirstHeader(HEADER_NAME);
+        if (null == header) {
+            return;
+        }
+        request.removeHeaders(HEADER_NAME);
+        Handle handle = HANDLES.get(header.getValue());
+        if (null != handle) {
+            handle.attach(request, context);
+        }
+    };
+
+    private ElasticSearchRequestCancellation() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * 登记请求
+     *
+     * @param options base RequestOptions
+     * @return instance of Handle
+     */
+    public static Handle register(RequestOptions options) {
+        String id = UUID.randomUUID().toString();
+        RequestOptions.Builder builder = options.toBuilder();
+        builder.addHeader(HEADER_NAME, id);
+        Handle handle = new Handle(id, builder.build());
+        HANDLES.put(id, handle);
+        return handle;
+    }
+
+    /**
+     * 登记中的请求数
+     *
+     * @return count of handles
+     */
+    public static int pending() {
+        return HANDLES.size();
+    }
+
+    /**
+     * 请求句柄
+     */
+    public static class Handle {
+
+        private final String id;
+
+        private final RequestOptions options;
+
+        private volatile HttpContext context;
+
+        private volatile boolean cancelled;
+
+        Handle(String id, RequestOptions options) {
+            this.id = id;
+            this.options = options;
+        }
+
+        /**
+         * 带登记请求头的 RequestOptions
+         *
+         * @return instance of RequestOptions
+         */
+        public RequestOptions getOptions() {
+            return options;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void attach(HttpRequest request, HttpContext context) throws IOException {
+            if (cancelled) {
+                throw new InterruptedIOException("request " + request.getRequestLine() + " cancelled");
+            }
+            this.context = context;
+        }
+
+        /**
+         * 取消请求, 关闭当前连接
+         */
+        public void cancel() {
+            cancelled = true;
+            HttpContext current = context;
+            if (null == current) {
+                return;
+            }
+            Object connection = current.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+            if (connection instanceof HttpConnection) {
+                try {
+                    ((HttpConnection) connection).shutdown();
+                } catch (IOException e) {
+                    log.error(DEFAULT_ERROR, e);
+                }
+            }
+        }
+
+        /**
+         * 请求完成(包括取消后失败)后释放
+         */
+        public void release() {
+            HANDLES.remove(id);
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.fastjson.util.TypeUtils;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.*;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.*;
+
+/**
+ * ElasticSearch Source Codec.
+ *
+ * 按目标类型生成的 _source 解码器: 构造函数和 setter 通过 LambdaMetafactory 绑定,
+ * 使用 XContent 流式解析直接填充对象, 不生成中间 Map. 解码器按类型缓存.
+ * 支持 public 类的 public 无参构造函数和 public setter, 字段名可用 {@link JSONField#name()} 指定.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public final class ElasticSearchSourceCodec<T> {
+
+    private static final Map<Class<?>, ElasticSearchSourceCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+
+    private final Supplier<T> constructor;
+
+    private final Map<String, Reader<T>> readers;
+
+    private ElasticSearchSourceCodec(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.constructor = bindConstructor(lookup, type);
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(type.getName() + " has no public default constructor", e);
+        }
+        Map<String, Reader<T>> map = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 1
+                    || !method.getName().startsWith("set") || method.getName().length() == 3) {
+                continue;
+            }
+            String name = propertyName(method);
+            if (null == name) {
+                continue;
+            }
+            try {
+                Reader<T> reader = reader(lookup, method);
+                if (null != reader) {
+                    map.put(name, reader);
+                }
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("can not bind " + type.getName() + "." + method.getName(), e);
+            }
+        }
+        this.readers = map;
+    }
+
+    /**
+     * 获取解码器
+     *
+     * @param type target type
+     * @param <T>  type
+     * @return instance of ElasticSearchSourceCodec
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ElasticSearchSourceCodec<T> of(Class<T> type) {
+        ElasticSearchSourceCodec<T> codec = (ElasticSearchSourceCodec<T>) CODECS.get(type);
+        if (null == codec) {
+            codec = new ElasticSearchSourceCodec<>(type);
+            ElasticSearchSourceCodec<T> exists = (ElasticSearchSourceCodec<T>) CODECS.putIfAbsent(type, codec);
+            if (null != exists) {
+                codec = exists;
+            }
+        }
+        return codec;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * 解码 _source
+     *
+     * @param source _source bytes
+     * @return instance of T, null if source is null
+     * @throws IOException if source is malformed
+     */
+    public T decode(BytesReference source) throws IOException {
+        if (null == source) {
+            return null;
+        }
+        BytesRef bytes = source.toBytesRef();
+        XContentType xContentType = XContentFactory.xContentType(bytes.bytes, bytes.offset, bytes.length);
+        if (null == xContentType) {
+            xContentType = XContentType.JSON;
+        }
+        try (XContentParser parser = xContentType.xContent().createParser(NamedXContentRegistry.EMPTY,
+                LoggingDeprecationHandler.INSTANCE, bytes.bytes, bytes.offset, bytes.length)) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * 解码当前对象
+     *
+     * @param parser instance of XContentParser, before or at START_OBJECT
+     * @return instance of T
+     * @throws IOException if source is malformed
+     */
+    public T decode(XContentParser parser) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        if (null == token) {
+            token = parser.nextToken();
+        }
+        if (token == XContentParser.Token.VALUE_NULL) {
+            return null;
+        }
+        if (token != XContentParser.Token.START_OBJECT) {
+            throw new ParsingException(parser.getTokenLocation(),
+                    "[" + type.getName() + "] expected START_OBJECT but found [" + token + "]");
+        }
+        T bean = constructor.get();
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            Reader<T> reader = readers.get(parser.currentName());
+            parser.nextToken();
+            if (null == reader) {
+                parser.skipChildren();
+            } else {
+                reader.read(parser, bean);
+            }
+        }
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> bindConstructor(MethodHandles.Lookup lookup, Class<T> type) throws Throwable {
+        MethodHandle handle = lookup.findConstructor(type, MethodType.methodType(void.class));
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                MethodType.methodType(Object.class), handle, MethodType.methodType(type));
+        return (Supplier<T>) callSite.getTarget().invoke();
+    }
+
+    private String propertyName(Method method) {
+        String name = Introspector.decapitalize(method.getName().substring(3));
+        JSONField annotation = method.getAnnotation(JSONField.class);
+        if (null == annotation) {
+            try {
+                annotation = type.getDeclaredField(name).getAnnotation(JSONField.class);
+            } catch (NoSuchFieldException e) {
+                annotation = null;
+            }
+        }
+        if (null == annotation) {
+            return name;
+        }
+        if (!annotation.deserialize()) {
+            return null;
+        }
+        return annotation.name().isEmpty() ? name : annotation.name();
+    }
+
+    /**
+     * 生成属性读取函数, 不支持的类型返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private Reader<T> reader(MethodHandles.Lookup lookup, Method method) throws Throwable {
+        Class<?> parameterType = method.getParameterTypes()[0];
+        MethodHandle handle = lookup.unreflect(method);
+        if (parameterType == int.class) {
+            ObjIntConsumer<T> setter = (ObjIntConsumer<T>) bindSetter(lookup, handle, ObjIntConsumer.class,
+                    "accept", int.class);
+            return (parser, bean) -> {
+                if (parser.currentToken() != XContentParser.Token.VALUE_NULL) {
+                    setter.accept(bean, parser.intValue());
+                }
+            };
+        }
+        if (parameterType == long.class) {
+            ObjLongConsumer<T> setter = (ObjLongConsumer<T>) bindSetter(lookup, handle, ObjLongConsumer.class,
+                    "accept", long.class);
+            return (parser, bean) -> {
+                if (parser.currentToken() != XContentParser.Token.VALUE_NULL) {
+                    setter.accept(bean, parser.longValue());
+                }
+            };
+        }
+        if (parameterType == double.class) {
+            ObjDoubleConsumer<T> setter = (ObjDoubleConsumer<T>) bindSetter(lookup, handle,
+                    ObjDoubleConsumer.class, "accept", double.class);
+            return (parser, bean) -> {
+                if (parser.currentToken() != XContentParser.Token.VALUE_NULL) {
+                    setter.accept(bean, parser.doubleValue());
+                }
+            };
+        }
+        ValueParser valueParser = valueParser(method.getGenericParameterTypes()[0]);
+        if (null == valueParser) {
+            return null;
+        }
+        BiConsumer<T, Object> setter = (BiConsumer<T, Object>) bindSetter(lookup, handle, BiConsumer.class,
+                "accept", parameterType.isPrimitive() ? MethodType.methodType(parameterType).wrap().returnType() :
+                        parameterType);
+        boolean primitive = parameterType.isPrimitive();
+        return (parser, bean) -> {
+            if (parser.currentToken() == XContentParser.Token.VALUE_NULL) {
+                if (!primitive) {
+                    setter.accept(bean, null);
+                }
+                return;
+            }
+            setter.accept(bean, valueParser.parse(parser));
+        };
+    }
+
+    private Object bindSetter(MethodHandles.Lookup lookup, MethodHandle handle, Class<?> functional,
+                              String name, Class<?> valueType) throws Throwable {
+        MethodType erased = MethodType.methodType(void.class, Object.class,
+                valueType.isPrimitive() ? valueType : Object.class);
+        CallSite callSite = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functional),
+                erased, handle, MethodType.methodType(void.class, type, valueType));
+        return callSite.getTarget().invoke();
+    }
+
+    /**
+     * 值解析函数, 不支持的类型返回 null
+     *
+     * @param genericType type of value
+     * @return instance of ValueParser
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static ValueParser valueParser(Type genericType) {
+        Class<?> rawType = rawType(genericType);
+        if (null == rawType) {
+            return null;
+        }
+        if (rawType == String.class) {
+            return XContentParser::text;
+        }
+        if (rawType == Integer.class || rawType == int.class) {
+            return XContentParser::intValue;
+        }
+        if (rawType == Long.class || rawType == long.class) {
+            return XContentParser::longValue;
+        }
+        if (rawType == Double.class || rawType == double.class) {
+            return XContentParser::doubleValue;
+        }
+        if (rawType == Float.class || rawType == float.class) {
+            return XContentParser::floatValue;
+        }
+        if (rawType == Boolean.class || rawType == boolean.class) {
+            return XContentParser::booleanValue;
+        }
+        if (rawType == Short.class || rawType == short.class) {
+            return XContentParser::shortValue;
+        }
+        if (rawType == Byte.class || rawType == byte.class) {
+            return parser -> (byte) parser.intValue();
+        }
+        if (rawType == BigDecimal.class) {
+            return parser -> new BigDecimal(parser.text());
+        }
+        if (rawType == Date.class) {
+            return parser -> parser.currentToken() == XContentParser.Token.VALUE_NUMBER ?
+                    new Date(parser.longValue()) : TypeUtils.castToDate(parser.text());
+        }
+        if (rawType.isEnum()) {
+            return parser -> Enum.valueOf((Class<Enum>) rawType, parser.text());
+        }
+        if (rawType == Object.class) {
+            return ElasticSearchSourceCodec::parseAny;
+        }
+        if (Map.class.isAssignableFrom(rawType)) {
+            return XContentParser::map;
+        }
+        if (Collection.class.isAssignableFrom(rawType)) {
+            Type elementType = genericType instanceof ParameterizedType ?
+                    ((ParameterizedType) genericType).getActualTypeArguments()[0] : Object.class;
+            ValueParser elementParser = valueParser(elementType);
+            if (null == elementParser) {
+                return null;
+            }
+            boolean set = Set.class.isAssignableFrom(rawType);
+            return parser -> parseCollection(parser, elementParser, set ? new LinkedHashSet<>() : new ArrayList<>());
+        }
+        if (isBean(rawType)) {
+            return parser -> of(rawType).decode(parser);
+        }
+        return null;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        }
+        return null;
+    }
+
+    private static boolean isBean(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())
+                || type.isArray() || type.getName().startsWith("java.")) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(type.getConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Object parseCollection(XContentParser parser, ValueParser elementParser,
+                                          Collection<Object> collection) throws IOException {
+        if (parser.currentToken() != XContentParser.Token.START_ARRAY) {
+            collection.add(elementParser.parse(parser));
+            return collection;
+        }
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            collection.add(token == XContentParser.Token.VALUE_NULL ? null : elementParser.parse(parser));
+        }
+        return collection;
+    }
+
+    private static Object parseAny(XContentParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                return parser.map();
+            case START_ARRAY:
+                return parser.list();
+            default:
+                return parser.objectText();
+        }
+    }
+
+    /**
+     * 属性读取函数
+     */
+    @FunctionalInterface
+    interface Reader<T> {
+        void read(XContentParser parser, T bean) throws IOException;
+    }
+
+    /**
+     * 值解析函数
+     */
+    @FunctionalInterface
+    interface ValueParser {
+        Object parse(XContentParser parser) throws IOException;
+    }
+
+}
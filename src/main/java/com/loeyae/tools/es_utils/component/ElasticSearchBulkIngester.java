@@ -0,0 +1,547 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.loeyae.tools.es_utils.common.ElasticSearchBulkBody;
+import com.loeyae.tools.es_utils.common.ElasticSearchCompression;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * elastic search bulk ingester.
+ *
+ * 流式 bulk 写入: 按请求数和序列化字节数切分批次, 最多 concurrency 个 bulk 同时执行,
+ * 窗口已满时 {@link #add(DocWriteRequest)} 阻塞调用方; 结束后按文档的原始位置报告成功或失败.
+ * source 的格式变化时切分批次, JSON 和 SMILE 的 source 原样写入 bulk body.
+ * 设置 {@link ElasticSearchBulkRetry} 后, 被拒绝(429)的条目单独退避重发, 重试期间不释放窗口.
+ * 单个实例只允许一个生产者顺序写入.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchBulkIngester implements AutoCloseable {
+
+    private static final String DEFAULT_ERROR_MSG = "ES Error: ";
+
+    public static final int DEFAULT_MAX_ACTIONS = 1000;
+
+    public static final long DEFAULT_MAX_BYTES = 5L * 1024 * 1024;
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    public static final int DEFAULT_MAX_FAILURES = 10000;
+
+    /**
+     * 与 BulkRequest 的估算一致, 每个请求的固定开销
+     */
+    private static final int REQUEST_OVERHEAD = 50;
+
+    private final RestHighLevelClient restHighLevelClient;
+
+    private final int maxActions;
+
+    private final long maxBytes;
+
+    private final int concurrency;
+
+    private final Semaphore window;
+
+    private final AtomicLong succeeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong bulks = new AtomicLong();
+
+    private final AtomicLong retried = new AtomicLong();
+
+    private final List<Failure> failures = new ArrayList<>();
+
+    private int maxFailures = DEFAULT_MAX_FAILURES;
+
+    private RequestOptions requestOptions = RequestOptions.DEFAULT;
+
+    private ObjLongConsumer<BulkItemResponse> itemListener;
+
+    private Consumer<String[]> writeListener;
+
+    private ElasticSearchBulkRetry retry;
+
+    private ElasticSearchCompression compression;
+
+    private BulkRequest current;
+
+    private long currentBytes;
+
+    private XContentType currentType;
+
+    private long currentBase;
+
+    private long position;
+
+    private boolean closed;
+
+    public ElasticSearchBulkIngester(RestHighLevelClient restHighLevelClient) {
+        this(restHighLevelClient, DEFAULT_MAX_ACTIONS, DEFAULT_MAX_BYTES, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * 构造
+     *
+     * @param restHighLevelClient instance of RestHighLevelClient
+     * @param maxActions          max requests of a bulk
+     * @param maxBytes            max estimated bytes of a bulk
+     * @param concurrency         max bulks in flight
+     */
+    public ElasticSearchBulkIngester(RestHighLevelClient restHighLevelClient, int maxActions, long maxBytes,
+                                     int concurrency) {
+        if (maxActions < 1 || maxBytes < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("maxActions, maxBytes and concurrency must be >= 1");
+        }
+        this.restHighLevelClient = restHighLevelClient;
+        this.maxActions = maxActions;
+        this.maxBytes = maxBytes;
+        this.concurrency = concurrency;
+        this.window = new Semaphore(concurrency);
+    }
+
+    /**
+     * 设置最多保留的失败明细数, 超出部分只计数
+     *
+     * @param maxFailures max failures kept
+     * @return this
+     */
+    public ElasticSearchBulkIngester maxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+        return this;
+    }
+
+    /**
+     * 设置请求的 RequestOptions
+     *
+     * @param requestOptions instance of RequestOptions
+     * @return this
+     */
+    public ElasticSearchBulkIngester requestOptions(RequestOptions requestOptions) {
+        this.requestOptions = requestOptions;
+        return this;
+    }
+
+    /**
+     * 设置被拒绝条目的重试策略, 为 null 时不重试
+     *
+     * @param retry instance of ElasticSearchBulkRetry
+     * @return this
+     */
+    public ElasticSearchBulkIngester retry(ElasticSearchBulkRetry retry) {
+        this.retry = retry;
+        return this;
+    }
+
+    /**
+     * 设置请求体压缩和 gzip 响应, 为 null 时不压缩
+     *
+     * @param compression instance of ElasticSearchCompression
+     * @return this
+     */
+    public ElasticSearchBulkIngester compression(ElasticSearchCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * 设置逐条结果的回调, 参数为响应和原始位置, 在 bulk 的回调线程中调用
+     *
+     * @param itemListener listener of item and position
+     * @return this
+     */
+    public ElasticSearchBulkIngester itemListener(ObjLongConsumer<BulkItemResponse> itemListener) {
+        this.itemListener = itemListener;
+        return this;
+    }
+
+    /**
+     * 设置每个 bulk 完成后的回调, 参数为写入的 index
+     *
+     * @param writeListener listener of written indices
+     * @return this
+     */
+    public ElasticSearchBulkIngester writeListener(Consumer<String[]> writeListener) {
+        this.writeListener = writeListener;
+        return this;
+    }
+
+    /**
+     * 添加请求, 达到批次上限时发送, 窗口已满时阻塞
+     *
+     * @param request instance of IndexRequest, UpdateRequest or DeleteRequest
+     * @return position of request
+     */
+    public synchronized long add(DocWriteRequest<?> request) {
+        if (closed) {
+            throw new IllegalStateException("bulk ingester closed");
+        }
+        XContentType contentType = ElasticSearchBulkBody.normalizeSource(request);
+        long size = sizeOf(request);
+        if (null != current && (currentBytes + size > maxBytes || current.numberOfActions() >= maxActions
+                || (null != contentType && null != currentType && contentType != currentType))) {
+            send();
+        }
+        if (null == current) {
+            current = new BulkRequest();
+            currentBytes = 0;
+            currentBase = position;
+            currentType = null;
+        }
+        current.add(request);
+        currentBytes += size;
+        if (null != contentType) {
+            currentType = contentType;
+        }
+        return position++;
+    }
+
+    /**
+     * 添加全部请求
+     *
+     * @param requests Iterator of requests
+     */
+    public void addAll(Iterator<? extends DocWriteRequest<?>> requests) {
+        while (requests.hasNext()) {
+            add(requests.next());
+        }
+    }
+
+    /**
+     * 发送当前批次
+     */
+    public synchronized void flush() {
+        if (null != current) {
+            send();
+        }
+    }
+
+    /**
+     * 发送剩余请求并等待全部 bulk 完成
+     *
+     * @return instance of Result
+     */
+    public Result finish() {
+        synchronized (this) {
+            flush();
+            closed = true;
+        }
+        window.acquireUninterruptibly(concurrency);
+        window.release(concurrency);
+        synchronized (failures) {
+            return new Result(position, succeeded.get(), failed.get(), bulks.get(), retried.get(),
+                    new ArrayList<>(failures));
+        }
+    }
+
+    @Override
+    public void close() {
+        finish();
+    }
+
+    private void send() {
+        BulkRequest bulkRequest = current;
+        long[] positions = new long[bulkRequest.numberOfActions()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = currentBase + i;
+        }
+        current = null;
+        currentBytes = 0;
+        window.acquireUninterruptibly();
+        if (null != retry) {
+            retry.deposit(positions.length);
+        }
+        execute(bulkRequest, positions, 0);
+    }
+
+    private void execute(BulkRequest bulkRequest, long[] positions, int attempt) {
+        bulks.incrementAndGet();
+        try {
+            ElasticSearchBulkBody.bulkAsync(restHighLevelClient.getLowLevelClient(), bulkRequest, requestOptions,
+                    compression, new ActionListener<BulkResponse>() {
+                        @Override
+                        public void onResponse(BulkResponse bulkResponse) {
+                            respond(bulkRequest, positions, attempt, bulkResponse.getItems());
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            log.error(DEFAULT_ERROR_MSG, e);
+                            respond(bulkRequest, positions, attempt,
+                                    ElasticSearchBulkRetry.failures(bulkRequest, e));
+                        }
+                    });
+        } catch (RuntimeException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+            respond(bulkRequest, positions, attempt, ElasticSearchBulkRetry.failures(bulkRequest, e));
+        }
+    }
+
+    /**
+     * 处理 bulk 结果, 被拒绝的条目在预算内退避重发, 全部完成后才释放窗口
+     */
+    private void respond(BulkRequest bulkRequest, long[] positions, int attempt, BulkItemResponse[] items) {
+        boolean retrying = false;
+        try {
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < items.length; i++) {
+                if (null != retry && ElasticSearchBulkRetry.isRetryable(items[i])) {
+                    pending.add(i);
+                } else {
+                    item(positions[i], items[i]);
+                }
+            }
+            int granted = null == retry ? 0 : retry.acquire(attempt, pending.size());
+            for (int i = granted; i < pending.size(); i++) {
+                item(positions[pending.get(i)], items[pending.get(i)]);
+            }
+            if (granted > 0) {
+                BulkRequest next = ElasticSearchBulkRetry.copy(bulkRequest);
+                long[] nextPositions = new long[granted];
+                for (int i = 0; i < granted; i++) {
+                    next.add(bulkRequest.requests().get(pending.get(i)));
+                    nextPositions[i] = positions[pending.get(i)];
+                }
+                retried.addAndGet(granted);
+                retry.schedule(attempt, () -> execute(next, nextPositions, attempt + 1));
+                retrying = true;
+            }
+        } finally {
+            try {
+                if (null != writeListener) {
+                    writeListener.accept(bulkRequest.requests().stream().map(DocWriteRequest::index).distinct()
+                            .toArray(String[]::new));
+                }
+            } finally {
+                if (!retrying) {
+                    window.release();
+                }
+            }
+        }
+    }
+
+    private void item(long itemPosition, BulkItemResponse item) {
+        if (item.isFailed()) {
+            failed.incrementAndGet();
+            BulkItemResponse.Failure failure = item.getFailure();
+            record(new Failure(itemPosition, item.getIndex(), item.getId(), failure.getStatus(),
+                    failure.getMessage()));
+        } else {
+            succeeded.incrementAndGet();
+        }
+        if (null != itemListener) {
+            itemListener.accept(item, itemPosition);
+        }
+    }
+
+    private void record(Failure failure) {
+        synchronized (failures) {
+            if (failures.size() < maxFailures) {
+                failures.add(failure);
+            }
+        }
+    }
+
+    /**
+     * 估算请求的序列化字节数
+     *
+     * @param request instance of DocWriteRequest
+     * @return estimated bytes
+     */
+    static long sizeOf(DocWriteRequest<?> request) {
+        long size = REQUEST_OVERHEAD;
+        if (request instanceof IndexRequest) {
+            IndexRequest indexRequest = (IndexRequest) request;
+            if (null != indexRequest.source()) {
+                size += indexRequest.source().length();
+            }
+        } else if (request instanceof UpdateRequest) {
+            UpdateRequest updateRequest = (UpdateRequest) request;
+            if (null != updateRequest.doc() && null != updateRequest.doc().source()) {
+                size += updateRequest.doc().source().length();
+            }
+            if (null != updateRequest.upsertRequest() && null != updateRequest.upsertRequest().source()) {
+                size += updateRequest.upsertRequest().source().length();
+            }
+            if (null != updateRequest.script()) {
+                size += updateRequest.script().getIdOrCode().length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 写入结果
+     */
+    public static class Result {
+
+        private final long total;
+
+        private final long succeeded;
+
+        private final long failed;
+
+        private final long bulks;
+
+        private final long retried;
+
+        private final List<Failure> failures;
+
+        Result(long total, long succeeded, long failed, long bulks, long retried, List<Failure> failures) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.bulks = bulks;
+            this.retried = retried;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getBulks() {
+            return bulks;
+        }
+
+        /**
+         * 被拒绝后重发的条目数, 同一条目每次重发都计数
+         *
+         * @return count
+         */
+        public long getRetried() {
+            return retried;
+        }
+
+        /**
+         * 失败明细, 按完成顺序, 最多保留 maxFailures 条
+         *
+         * @return List of Failure
+         */
+        public List<Failure> getFailures() {
+            return failures;
+        }
+
+        /**
+         * 永久失败的明细, 如 mapping 错误, 不含重试用尽的拒绝
+         *
+         * @return List of Failure
+         */
+        public List<Failure> getPermanentFailures() {
+            return failures.stream().filter(failure -> !failure.isRejected()).collect(Collectors.toList());
+        }
+
+        /**
+         * 重试次数或预算用尽后仍被拒绝的明细
+         *
+         * @return List of Failure
+         */
+        public List<Failure> getRejectedFailures() {
+            return failures.stream().filter(Failure::isRejected).collect(Collectors.toList());
+        }
+
+        public boolean hasFailures() {
+            return failed > 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{total=" + total + ", succeeded=" + succeeded + ", failed=" + failed
+                    + ", bulks=" + bulks + ", retried=" + retried + "}";
+        }
+    }
+
+    /**
+     * 失败的文档
+     */
+    public static class Failure {
+
+        private final long position;
+
+        private final String index;
+
+        private final String id;
+
+        private final RestStatus status;
+
+        private final String message;
+
+        Failure(long position, String index, String id, RestStatus status, String message) {
+            this.position = position;
+            this.index = index;
+            this.id = id;
+            this.status = status;
+            this.message = message;
+        }
+
+        /**
+         * 在输入中的位置, 从 0 开始
+         *
+         * @return position
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public RestStatus getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * 是否因集群过载被拒绝(429), 可以稍后重新写入
+         *
+         * @return true | false
+         */
+        public boolean isRejected() {
+            return RestStatus.TOO_MANY_REQUESTS == status;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{position=" + position + ", index=" + index + ", id=" + id + ", status=" + status
+                    + ", message=" + message + "}";
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.Script;
+
+import java.util.Map;
+
+/**
+ * elastic search bulk operations.
+ *
+ * 混合 index/update/upsert/delete 的 bulk 构造器, 请求直接写入 {@link ElasticSearchBulkIngester},
+ * 共用其批次切分、并发窗口、拒绝重试和逐条结果; 位置按添加顺序从 0 开始.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchBulkOperations implements AutoCloseable {
+
+    private final ElasticSearchBulkIngester ingester;
+
+    public ElasticSearchBulkOperations(ElasticSearchBulkIngester ingester) {
+        this.ingester = ingester;
+    }
+
+    /**
+     * 添加或覆盖
+     *
+     * @param index  index name
+     * @param id     doc id, null for auto generated
+     * @param source source data
+     * @return this
+     */
+    public ElasticSearchBulkOperations index(String index, String id, Map<String, Object> source) {
+        return add(new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id).source(source));
+    }
+
+    /**
+     * 添加或覆盖, source 为已序列化的字节
+     *
+     * @param index        index name
+     * @param id           doc id, null for auto generated
+     * @param source       source bytes
+     * @param xContentType content type of source
+     * @return this
+     */
+    public ElasticSearchBulkOperations index(String index, String id, BytesReference source,
+                                             XContentType xContentType) {
+        return add(new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id)
+                .source(source, xContentType));
+    }
+
+    /**
+     * 添加或覆盖, source 为已序列化的字节
+     *
+     * @param index        index name
+     * @param id           doc id, null for auto generated
+     * @param source       source bytes
+     * @param xContentType content type of source
+     * @return this
+     */
+    public ElasticSearchBulkOperations index(String index, String id, byte[] source, XContentType xContentType) {
+        return index(index, id, new BytesArray(source), xContentType);
+    }
+
+    /**
+     * 仅在文档不存在时添加
+     *
+     * @param index  index name
+     * @param id     doc id
+     * @param source source data
+     * @return this
+     */
+    public ElasticSearchBulkOperations create(String index, String id, Map<String, Object> source) {
+        return add(new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id).source(source)
+                .create(true));
+    }
+
+    /**
+     * 部分更新, 文档不存在时失败
+     *
+     * @param index index name
+     * @param id    doc id
+     * @param doc   partial doc
+     * @return this
+     */
+    public ElasticSearchBulkOperations update(String index, String id, Map<String, Object> doc) {
+        return add(new UpdateRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id).doc(doc));
+    }
+
+    /**
+     * 脚本更新
+     *
+     * @param index  index name
+     * @param id     doc id
+     * @param script instance of Script
+     * @return this
+     */
+    public ElasticSearchBulkOperations update(String index, String id, Script script) {
+        return add(new UpdateRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id).script(script));
+    }
+
+    /**
+     * 部分更新, 文档不存在时以 doc 添加
+     *
+     * @param index index name
+     * @param id    doc id
+     * @param doc   partial doc
+     * @return this
+     */
+    public ElasticSearchBulkOperations upsert(String index, String id, Map<String, Object> doc) {
+        return add(new UpdateRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id).doc(doc)
+                .docAsUpsert(true));
+    }
+
+    /**
+     * 删除
+     *
+     * @param index index name
+     * @param id    doc id
+     * @return this
+     */
+    public ElasticSearchBulkOperations delete(String index, String id) {
+        return add(new DeleteRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id));
+    }
+
+    /**
+     * 添加请求
+     *
+     * @param request instance of IndexRequest, UpdateRequest or DeleteRequest
+     * @return this
+     */
+    public ElasticSearchBulkOperations add(DocWriteRequest<?> request) {
+        ingester.add(request);
+        return this;
+    }
+
+    /**
+     * 发送剩余请求并等待全部 bulk 完成
+     *
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result execute() {
+        return ingester.finish();
+    }
+
+    @Override
+    public void close() {
+        ingester.close();
+    }
+
+}
@@ -0,0 +1,336 @@
+package com.loeyae.tools.es_utils.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.CheckedFunction;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * elastic search bulk retry.
+ *
+ * 只重发被拒绝(429)的 bulk 条目, 退避时间为 [0, min(maxBackoff, initialBackoff * 2^attempt)] 内的随机值.
+ * 重试受预算限制: 每个首次发送的条目存入 budgetRatio 个令牌, 每个重发的条目消耗一个令牌,
+ * 令牌上限为 maxBudget; 预算耗尽时条目按失败返回, 避免过载时放大写入.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchBulkRetry {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    public static final long DEFAULT_INITIAL_BACKOFF = 50L;
+
+    public static final long DEFAULT_MAX_BACKOFF = 5000L;
+
+    public static final double DEFAULT_BUDGET_RATIO = 0.2;
+
+    public static final long DEFAULT_MAX_BUDGET = 1000L;
+
+    /**
+     * 令牌以千分之一为单位计数
+     */
+    private static final long SCALE = 1000L;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "es-bulk-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxRetries;
+
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    private final long budgetRatio;
+
+    private final long maxBudget;
+
+    private final AtomicLong budget;
+
+    private final AtomicLong retried = new AtomicLong();
+
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public ElasticSearchBulkRetry() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_BUDGET_RATIO,
+                DEFAULT_MAX_BUDGET);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxRetries     max retries of an item
+     * @param initialBackoff initial backoff millis
+     * @param maxBackoff     max backoff millis
+     * @param budgetRatio    retry tokens earned by each item sent
+     * @param maxBudget      max retry tokens
+     */
+    public ElasticSearchBulkRetry(int maxRetries, long initialBackoff, long maxBackoff, double budgetRatio,
+                                  long maxBudget) {
+        if (maxRetries < 0 || initialBackoff < 0 || maxBackoff < initialBackoff || budgetRatio < 0 || maxBudget < 0) {
+            throw new IllegalArgumentException("invalid bulk retry settings");
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.budgetRatio = (long) (budgetRatio * SCALE);
+        this.maxBudget = maxBudget * SCALE;
+        this.budget = new AtomicLong(this.maxBudget);
+    }
+
+    /**
+     * 是否可以重试: 条目被拒绝
+     *
+     * @param item instance of BulkItemResponse
+     * @return true | false
+     */
+    public static boolean isRetryable(BulkItemResponse item) {
+        return item.isFailed() && RestStatus.TOO_MANY_REQUESTS == item.getFailure().getStatus();
+    }
+
+    /**
+     * 是否可以重试: 整个 bulk 被拒绝
+     *
+     * @param e exception of bulk
+     * @return true | false
+     */
+    public static boolean isRetryable(Exception e) {
+        return RestStatus.TOO_MANY_REQUESTS == ExceptionsHelper.status(e);
+    }
+
+    /**
+     * 首次发送的条目存入令牌
+     *
+     * @param items count of items sent
+     */
+    public void deposit(int items) {
+        long tokens = items * budgetRatio;
+        budget.accumulateAndGet(tokens, (current, add) -> Math.min(maxBudget, current + add));
+    }
+
+    /**
+     * 申请重试令牌
+     *
+     * @param attempt retries already done
+     * @param items   count of items to retry
+     * @return count of items allowed to retry
+     */
+    public int acquire(int attempt, int items) {
+        if (attempt >= maxRetries || items <= 0) {
+            exhausted.addAndGet(items);
+            return 0;
+        }
+        long current;
+        int granted;
+        do {
+            current = budget.get();
+            granted = (int) Math.min(items, current / SCALE);
+        } while (granted > 0 && !budget.compareAndSet(current, current - granted * SCALE));
+        retried.addAndGet(granted);
+        exhausted.addAndGet(items - (long) granted);
+        return granted;
+    }
+
+    /**
+     * 第 attempt 次重试前的退避时间
+     *
+     * @param attempt retries already done
+     * @return millis
+     */
+    public long backoff(int attempt) {
+        long bound = initialBackoff << Math.min(attempt, 30);
+        if (bound <= 0 || bound > maxBackoff) {
+            bound = maxBackoff;
+        }
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * 退避后异步执行
+     *
+     * @param attempt retries already done
+     * @param task    retry task
+     */
+    public void schedule(int attempt, Runnable task) {
+        SCHEDULER.schedule(task, backoff(attempt), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 同步执行 bulk, 被拒绝的条目退避后重发
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @param bulk        bulk executor
+     * @return instance of Outcome
+     * @throws IOException 首次请求失败且不可重试
+     */
+    public Outcome execute(BulkRequest bulkRequest, CheckedFunction<BulkRequest, BulkResponse, IOException> bulk)
+            throws IOException {
+        List<DocWriteRequest<?>> requests = bulkRequest.requests();
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        int[] positions = new int[requests.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        deposit(requests.size());
+        BulkRequest current = bulkRequest;
+        int bulks = 0;
+        int retries = 0;
+        for (int attempt = 0; ; attempt++) {
+            BulkItemResponse[] responses;
+            try {
+                bulks++;
+                responses = bulk.apply(current).getItems();
+            } catch (IOException | RuntimeException e) {
+                if (attempt == 0 && !isRetryable(e)) {
+                    throw e;
+                }
+                responses = failures(current, e);
+            }
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < responses.length; i++) {
+                BulkItemResponse item = responses[i];
+                items[positions[i]] = item;
+                if (isRetryable(item)) {
+                    pending.add(i);
+                }
+            }
+            int granted = acquire(attempt, pending.size());
+            if (granted == 0) {
+                return new Outcome(items, bulks, retries);
+            }
+            try {
+                Thread.sleep(backoff(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(items, bulks, retries);
+            }
+            BulkRequest next = copy(bulkRequest);
+            int[] nextPositions = new int[granted];
+            for (int i = 0; i < granted; i++) {
+                int index = pending.get(i);
+                next.add(current.requests().get(index));
+                nextPositions[i] = positions[index];
+            }
+            retries += granted;
+            current = next;
+            positions = nextPositions;
+        }
+    }
+
+    /**
+     * 复制 bulk 的参数, 不含请求
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @return instance of BulkRequest
+     */
+    static BulkRequest copy(BulkRequest bulkRequest) {
+        BulkRequest next = new BulkRequest();
+        next.setRefreshPolicy(bulkRequest.getRefreshPolicy());
+        next.timeout(bulkRequest.timeout());
+        next.waitForActiveShards(bulkRequest.waitForActiveShards());
+        return next;
+    }
+
+    /**
+     * 整个 bulk 失败时, 其中每个请求都记为失败
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @param e           exception of bulk
+     * @return Array of BulkItemResponse
+     */
+    static BulkItemResponse[] failures(BulkRequest bulkRequest, Exception e) {
+        List<DocWriteRequest<?>> requests = bulkRequest.requests();
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        for (int i = 0; i < items.length; i++) {
+            DocWriteRequest<?> request = requests.get(i);
+            items[i] = new BulkItemResponse(i, request.opType(), new BulkItemResponse.Failure(request.index(),
+                    request.type(), request.id(), e));
+        }
+        return items;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 剩余的重试令牌
+     *
+     * @return tokens
+     */
+    public long getBudget() {
+        return budget.get() / SCALE;
+    }
+
+    /**
+     * 已重发的条目数
+     *
+     * @return count
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    /**
+     * 因次数或预算用尽而放弃重试的条目数
+     *
+     * @return count
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * 同步执行的结果
+     */
+    public static class Outcome {
+
+        private final BulkItemResponse[] items;
+
+        private final int bulks;
+
+        private final int retries;
+
+        Outcome(BulkItemResponse[] items, int bulks, int retries) {
+            this.items = items;
+            this.bulks = bulks;
+            this.retries = retries;
+        }
+
+        /**
+         * 每个请求的最终结果, 按原始顺序
+         *
+         * @return Array of BulkItemResponse
+         */
+        public BulkItemResponse[] getItems() {
+            return items;
+        }
+
+        public int getBulks() {
+            return bulks;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.loeyae.tools.es_utils.component;
 
+import com.loeyae.tools.es_utils.common.ElasticSearchBulkBody;
+import com.loeyae.tools.es_utils.common.ElasticSearchCompression;
 import com.loeyae.tools.es_utils.common.ElasticSearchQueryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
@@ -17,7 +20,10 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.reindex.BulkByScrollResponse;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
@@ -25,11 +31,19 @@ import org.elasticsearch.index.reindex.UpdateByQueryRequest;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.script.Script;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Elastic Search Document Utils.
@@ -49,6 +63,76 @@ public class ElasticSearchDocumentUtils {
     @Autowired
     RestHighLevelClient restHighLevelClient;
 
+    @Autowired
+    ElasticSearchQueryUtils queryUtils;
+
+    @Value("${elasticsearch.bulk.max-actions:1000}")
+    private int bulkMaxActions = ElasticSearchBulkIngester.DEFAULT_MAX_ACTIONS;
+
+    @Value("${elasticsearch.bulk.max-bytes:5242880}")
+    private long bulkMaxBytes = ElasticSearchBulkIngester.DEFAULT_MAX_BYTES;
+
+    @Value("${elasticsearch.bulk.concurrency:2}")
+    private int bulkConcurrency = ElasticSearchBulkIngester.DEFAULT_CONCURRENCY;
+
+    @Value("${elasticsearch.bulk.retry.max-retries:3}")
+    private int bulkMaxRetries = ElasticSearchBulkRetry.DEFAULT_MAX_RETRIES;
+
+    @Value("${elasticsearch.bulk.retry.initial-backoff-millis:50}")
+    private long bulkInitialBackoff = ElasticSearchBulkRetry.DEFAULT_INITIAL_BACKOFF;
+
+    @Value("${elasticsearch.bulk.retry.max-backoff-millis:5000}")
+    private long bulkMaxBackoff = ElasticSearchBulkRetry.DEFAULT_MAX_BACKOFF;
+
+    @Value("${elasticsearch.bulk.retry.budget-ratio:0.2}")
+    private double bulkBudgetRatio = ElasticSearchBulkRetry.DEFAULT_BUDGET_RATIO;
+
+    @Value("${elasticsearch.bulk.retry.max-budget:1000}")
+    private long bulkMaxBudget = ElasticSearchBulkRetry.DEFAULT_MAX_BUDGET;
+
+    private volatile ElasticSearchBulkRetry bulkRetry;
+
+    @Autowired(required = false)
+    volatile ElasticSearchCompression compression;
+
+    /**
+     * 按配置创建 bulk 重试策略
+     */
+    @PostConstruct
+    public void init() {
+        if (null == bulkRetry) {
+            bulkRetry = new ElasticSearchBulkRetry(bulkMaxRetries, bulkInitialBackoff, bulkMaxBackoff,
+                    bulkBudgetRatio, bulkMaxBudget);
+        }
+    }
+
+    /**
+     * 设置 bulk 重试策略, 为 null 时不重试
+     *
+     * @param bulkRetry instance of ElasticSearchBulkRetry
+     */
+    public void setBulkRetry(ElasticSearchBulkRetry bulkRetry) {
+        this.bulkRetry = bulkRetry;
+    }
+
+    /**
+     * bulk 重试策略, 可读取剩余预算等统计
+     *
+     * @return instance of ElasticSearchBulkRetry, null if disabled
+     */
+    public ElasticSearchBulkRetry getBulkRetry() {
+        return bulkRetry;
+    }
+
+    /**
+     * 设置 bulk 请求体压缩和 gzip 响应, 为 null 时不压缩
+     *
+     * @param compression instance of ElasticSearchCompression
+     */
+    public void setCompression(ElasticSearchCompression compression) {
+        this.compression = compression;
+    }
+
     /**
      * 新增
      *
@@ -91,6 +175,47 @@ public class ElasticSearchDocumentUtils {
         return insert(indexRequest);
     }
 
+    /**
+     * 新增, source 为已序列化的字节, 原样发送
+     *
+     * @param index        index name
+     * @param id           doc id, null for auto generated
+     * @param source       source bytes
+     * @param xContentType content type of source: JSON, SMILE, CBOR or YAML
+     * @return doc id | null
+     */
+    public String insert(String index, String id, BytesReference source, XContentType xContentType) {
+        IndexRequest indexRequest = new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id);
+        indexRequest.source(source, xContentType);
+        return insert(indexRequest);
+    }
+
+    /**
+     * 新增, source 为已序列化的字节, 原样发送
+     *
+     * @param index        index name
+     * @param id           doc id, null for auto generated
+     * @param source       source bytes
+     * @param xContentType content type of source: JSON, SMILE, CBOR or YAML
+     * @return doc id | null
+     */
+    public String insert(String index, String id, byte[] source, XContentType xContentType) {
+        return insert(index, id, new BytesArray(source), xContentType);
+    }
+
+    /**
+     * 新增, source 为已序列化的字节, 原样发送
+     *
+     * @param index        index name
+     * @param id           doc id, null for auto generated
+     * @param source       source bytes, from position to limit
+     * @param xContentType content type of source: JSON, SMILE, CBOR or YAML
+     * @return doc id | null
+     */
+    public String insert(String index, String id, ByteBuffer source, XContentType xContentType) {
+        return insert(index, id, bytes(source), xContentType);
+    }
+
     /**
      * insert
      *
@@ -106,6 +231,8 @@ public class ElasticSearchDocumentUtils {
             }
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(indexRequest.index());
         }
         return null;
     }
@@ -225,6 +352,8 @@ public class ElasticSearchDocumentUtils {
             }
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(updateRequest.index());
         }
         return false;
     }
@@ -269,6 +398,8 @@ public class ElasticSearchDocumentUtils {
             }
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(deleteRequest.index());
         }
         return false;
     }
@@ -300,6 +431,25 @@ public class ElasticSearchDocumentUtils {
         return bulkInsert(bulkRequest);
     }
 
+    /**
+     * 批量添加, source 为已序列化的字节, JSON 和 SMILE 原样写入 bulk body, 其他格式转为 SMILE
+     *
+     * @param index        index name
+     * @param sources      List of source bytes
+     * @param xContentType content type of sources
+     * @return Array of doc id
+     */
+    public String[] bulkInsert(String index, List<? extends BytesReference> sources, XContentType xContentType) {
+        BulkRequest bulkRequest = new BulkRequest();
+        sources.forEach(item -> {
+            IndexRequest indexRequest = new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE)
+                    .source(item, xContentType);
+            ElasticSearchBulkBody.normalizeSource(indexRequest);
+            bulkRequest.add(indexRequest);
+        });
+        return bulkInsert(bulkRequest);
+    }
+
     /**
      * bulkInsert
      *
@@ -308,20 +458,189 @@ public class ElasticSearchDocumentUtils {
      */
     public String[] bulkInsert(BulkRequest bulkRequest) {
         try {
-            BulkResponse bulkResponse = restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-            String[] restStatus = new String[bulkResponse.getItems().length];
-            int i = 0;
-            for (BulkItemResponse item : bulkResponse) {
-                restStatus[i] = (RestStatus.CREATED == item.status() ? item.getId() : null);
-                i++;
+            BulkItemResponse[] items = bulkItems(bulkRequest).getItems();
+            String[] restStatus = new String[items.length];
+            for (int i = 0; i < items.length; i++) {
+                restStatus[i] = (RestStatus.CREATED == items[i].status() ? items[i].getId() : null);
             }
             return restStatus;
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(bulkRequest.requests().stream().map(DocWriteRequest::index).distinct()
+                    .toArray(String[]::new));
         }
         return null;
     }
 
+    /**
+     * 批量写入, 被拒绝(429)的条目退避后单独重发, 返回按原始位置的成功和失败明细
+     *
+     * @param bulkRequest instance of BulkRequest
+     * @return instance of ElasticSearchBulkIngester.Result, null if failed
+     */
+    public ElasticSearchBulkIngester.Result bulk(BulkRequest bulkRequest) {
+        try {
+            ElasticSearchBulkRetry.Outcome outcome = bulkItems(bulkRequest);
+            BulkItemResponse[] items = outcome.getItems();
+            long failed = 0;
+            List<ElasticSearchBulkIngester.Failure> failures = new ArrayList<>();
+            for (int i = 0; i < items.length; i++) {
+                if (items[i].isFailed()) {
+                    failed++;
+                    failures.add(new ElasticSearchBulkIngester.Failure(i, items[i].getIndex(), items[i].getId(),
+                            items[i].getFailure().getStatus(), items[i].getFailure().getMessage()));
+                }
+            }
+            return new ElasticSearchBulkIngester.Result(items.length, items.length - failed, failed,
+                    outcome.getBulks(), outcome.getRetries(), failures);
+        } catch (IOException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(bulkRequest.requests().stream().map(DocWriteRequest::index).distinct()
+                    .toArray(String[]::new));
+        }
+        return null;
+    }
+
+    private ElasticSearchBulkRetry.Outcome bulkItems(BulkRequest bulkRequest) throws IOException {
+        ElasticSearchBulkRetry retry = bulkRetry;
+        ElasticSearchCompression bulkCompression = compression;
+        if (null == retry) {
+            BulkResponse bulkResponse = ElasticSearchBulkBody.bulk(restHighLevelClient.getLowLevelClient(),
+                    bulkRequest, RequestOptions.DEFAULT, bulkCompression);
+            return new ElasticSearchBulkRetry.Outcome(bulkResponse.getItems(), 1, 0);
+        }
+        return retry.execute(bulkRequest, request -> ElasticSearchBulkBody.bulk(
+                restHighLevelClient.getLowLevelClient(), request, RequestOptions.DEFAULT, bulkCompression));
+    }
+
+    /**
+     * 创建流式 bulk 写入器, 批次按配置切分, 被拒绝的条目按重试策略重发, 完成的 bulk 会失效对应 index 的查询缓存
+     *
+     * @return instance of ElasticSearchBulkIngester, must be finished
+     */
+    public ElasticSearchBulkIngester bulkIngester() {
+        return new ElasticSearchBulkIngester(restHighLevelClient, bulkMaxActions, bulkMaxBytes, bulkConcurrency)
+                .retry(bulkRetry).compression(compression).writeListener(this::invalidate);
+    }
+
+    /**
+     * 流式批量添加
+     *
+     * @param index   index name
+     * @param sources Iterator of source data
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkIngest(String index, Iterator<Map<String, Object>> sources) {
+        return bulkIngest(new Iterator<DocWriteRequest<?>>() {
+            @Override
+            public boolean hasNext() {
+                return sources.hasNext();
+            }
+
+            @Override
+            public DocWriteRequest<?> next() {
+                return new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE).source(sources.next());
+            }
+        });
+    }
+
+    /**
+     * 流式批量添加, source 为已序列化的字节, JSON 和 SMILE 原样写入 bulk body, 其他格式转为 SMILE
+     *
+     * @param index        index name
+     * @param sources      Iterator of source bytes
+     * @param xContentType content type of sources
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkIngest(String index, Iterator<byte[]> sources,
+                                                      XContentType xContentType) {
+        return bulkIngest(new Iterator<DocWriteRequest<?>>() {
+            @Override
+            public boolean hasNext() {
+                return sources.hasNext();
+            }
+
+            @Override
+            public DocWriteRequest<?> next() {
+                return new IndexRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE)
+                        .source(sources.next(), xContentType);
+            }
+        });
+    }
+
+    /**
+     * 流式批量添加
+     *
+     * @param index   index name
+     * @param sources Stream of source data
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkIngest(String index, Stream<Map<String, Object>> sources) {
+        try (Stream<Map<String, Object>> stream = sources) {
+            return bulkIngest(index, stream.iterator());
+        }
+    }
+
+    /**
+     * 创建混合操作的 bulk 构造器, 与流式写入共用批次、并发窗口和重试
+     *
+     * @return instance of ElasticSearchBulkOperations, must be executed
+     */
+    public ElasticSearchBulkOperations bulkOperations() {
+        return new ElasticSearchBulkOperations(bulkIngester());
+    }
+
+    /**
+     * 批量部分更新, 文档不存在时该条失败
+     *
+     * @param index index name
+     * @param docs  Map of doc id and partial doc
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkUpdate(String index, Map<String, Map<String, Object>> docs) {
+        return bulkIngest(docs.entrySet().stream().<DocWriteRequest<?>>map(doc ->
+                new UpdateRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, doc.getKey())
+                        .doc(doc.getValue())).iterator());
+    }
+
+    /**
+     * 批量 upsert, 文档不存在时以 doc 添加
+     *
+     * @param index index name
+     * @param docs  Map of doc id and doc
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkUpsert(String index, Map<String, Map<String, Object>> docs) {
+        return bulkIngest(docs.entrySet().stream().<DocWriteRequest<?>>map(doc ->
+                new UpdateRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, doc.getKey())
+                        .doc(doc.getValue()).docAsUpsert(true)).iterator());
+    }
+
+    /**
+     * 批量删除, 文档不存在不算失败
+     *
+     * @param index index name
+     * @param ids   Collection of doc id
+     * @return instance of ElasticSearchBulkIngester.Result
+     */
+    public ElasticSearchBulkIngester.Result bulkDelete(String index, Collection<String> ids) {
+        return bulkIngest(ids.stream().<DocWriteRequest<?>>map(id ->
+                new DeleteRequest(index, ElasticSearchIndicesUtils.DEFAULT_INDEX_TYPE, id)).iterator());
+    }
+
+    private ElasticSearchBulkIngester.Result bulkIngest(Iterator<DocWriteRequest<?>> requests) {
+        ElasticSearchBulkIngester ingester = bulkIngester();
+        try {
+            ingester.addAll(requests);
+        } catch (RuntimeException e) {
+            ingester.finish();
+            throw e;
+        }
+        return ingester.finish();
+    }
+
     /**
      * 根据search条件更新数据
      *
@@ -412,6 +731,8 @@ public class ElasticSearchDocumentUtils {
             return bulkResponse.getUpdated();
         } catch (IOException | ElasticsearchStatusException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(updateByQueryRequest.indices());
         }
         return 0L;
     }
@@ -477,8 +798,36 @@ public class ElasticSearchDocumentUtils {
             return bulkResponse.getDeleted();
         } catch (IOException | ElasticsearchStatusException e) {
             log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            invalidate(deleteByQueryRequest.indices());
         }
         return 0L;
     }
 
+    /**
+     * ByteBuffer 剩余字节, 不改变 position
+     *
+     * @param buffer buffer
+     * @return BytesReference
+     */
+    private static BytesReference bytes(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new BytesArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new BytesArray(bytes);
+    }
+
+    /**
+     * 失效 index 的查询缓存
+     *
+     * @param indices index names
+     */
+    private void invalidate(String... indices) {
+        if (null != queryUtils) {
+            queryUtils.invalidate(indices);
+        }
+    }
+
 }
\ No newline at end of file
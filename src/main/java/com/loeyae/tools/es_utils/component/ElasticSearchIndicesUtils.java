@@ -1,5 +1,6 @@
 package com.loeyae.tools.es_utils.component;
 
+import com.carrotsearch.hppc.cursors.ObjectCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.elasticsearch.ElasticsearchException;
@@ -7,9 +8,12 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.get.GetIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -152,6 +156,29 @@ public class ElasticSearchIndicesUtils {
         return restStatus;
     }
 
+    /**
+     * 主分片数, 多个索引时取最大值
+     *
+     * @param names index names
+     * @return number of shards, 0 if failed
+     */
+    public int shardCount(String... names) {
+        GetSettingsRequest getSettingsRequest = new GetSettingsRequest();
+        getSettingsRequest.indices(names);
+        getSettingsRequest.names(IndexMetaData.SETTING_NUMBER_OF_SHARDS);
+        int shards = 0;
+        try {
+            GetSettingsResponse getSettingsResponse = restHighLevelClient.indices().getSettings(getSettingsRequest,
+                    RequestOptions.DEFAULT);
+            for (ObjectCursor<Settings> cursor : getSettingsResponse.getIndexToSettings().values()) {
+                shards = Math.max(shards, cursor.value.getAsInt(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 0));
+            }
+        } catch (IOException | ElasticsearchException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+        }
+        return shards;
+    }
+
     /**
      * 删除索引
      *
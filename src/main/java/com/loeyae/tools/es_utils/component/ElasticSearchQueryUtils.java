@@ -2,24 +2,69 @@ package com.loeyae.tools.es_utils.component;
 
 
 import com.loeyae.tools.es_utils.common.ElasticSearchAggregationBuilder;
+import com.loeyae.tools.es_utils.common.ElasticSearchCompression;
+import com.loeyae.tools.es_utils.common.ElasticSearchCursor;
+import com.loeyae.tools.es_utils.common.ElasticSearchFilterPath;
+import com.loeyae.tools.es_utils.common.ElasticSearchFingerprint;
 import com.loeyae.tools.es_utils.common.ElasticSearchQueryBuilder;
+import com.loeyae.tools.es_utils.common.ElasticSearchRequestCancellation;
+import com.loeyae.tools.es_utils.common.ElasticSearchSourceCodec;
+import com.alibaba.fastjson.util.TypeUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.*;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.lookup.SourceLookup;
+import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.DocValueFieldsContext;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.alibaba.fastjson.JSON.toJSONString;
 
@@ -42,33 +87,106 @@ public class ElasticSearchQueryUtils {
 
     private static final SortOrder DEFAULT_SORT_TYPE = SortOrder.DESC;
 
+    private static final String COUNT_FIELD = "count";
+
     @Autowired
     RestHighLevelClient restHighLevelClient;
 
+    private volatile Executor callbackExecutor = ForkJoinPool.commonPool();
+
+    @Value("${elasticsearch.search-after.tiebreaker:_id}")
+    private String tiebreakerField = "_id";
+
+    @Value("${elasticsearch.coalesce.enabled:false}")
+    private boolean coalesceEnabled;
+
+    @Value("${elasticsearch.coalesce.window-millis:2}")
+    private long coalesceWindowMillis = ElasticSearchSearchCoalescer.DEFAULT_WINDOW_MILLIS;
+
+    @Value("${elasticsearch.coalesce.max-batch:32}")
+    private int coalesceMaxBatch = ElasticSearchSearchCoalescer.DEFAULT_MAX_BATCH;
+
+    @Value("${elasticsearch.coalesce.histogram-buckets:1,2,4,8,16,32,64}")
+    private int[] coalesceHistogramBuckets = ElasticSearchSearchCoalescer.DEFAULT_HISTOGRAM_BUCKETS;
+
+    private volatile ElasticSearchSearchCoalescer coalescer;
+
+    @Value("${elasticsearch.single-flight.enabled:false}")
+    private boolean singleFlightEnabled;
+
+    private volatile ElasticSearchSingleFlight singleFlight;
+
+    @Value("${elasticsearch.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${elasticsearch.cache.max-bytes:67108864}")
+    private long cacheMaxBytes = ElasticSearchSearchCache.DEFAULT_MAX_BYTES;
+
+    @Value("${elasticsearch.cache.ttl-seconds:60}")
+    private long cacheTtlSeconds = TimeUnit.MILLISECONDS.toSeconds(ElasticSearchSearchCache.DEFAULT_TTL_MILLIS);
+
+    @Value("${elasticsearch.cache.index-ttl:}")
+    private String cacheIndexTtl;
+
+    @Value("${elasticsearch.cache.refresh-millis:1000}")
+    private long cacheRefreshMillis = ElasticSearchSearchCache.DEFAULT_REFRESH_MILLIS;
+
+    private volatile ElasticSearchSearchCache cache;
+
+    @Value("${elasticsearch.filter-path.enabled:false}")
+    private boolean filterPathEnabled;
+
+    @Value("${elasticsearch.filter-path.default:}")
+    private String[] defaultFilterPath;
+
+    private volatile String[] filterPath;
+
+    private volatile RequestOptions requestOptions = RequestOptions.DEFAULT;
+
+    @Autowired(required = false)
+    volatile ElasticSearchCompression compression;
+
     /**
-     * searchResponse 解析
+     * searchResponse 解析, source、cursor 和 aggregations 在首次访问时解析.
+     * source map 由各 Result 自行解析, 不使用 SearchHit 缓存的 map, 共享的 SearchResponse (结果缓存、single flight)
+     * 上各调用方修改 source 互不影响.
      */
     static public class Result {
 
         private SearchResponse searchResponse;
 
+        private SearchHits searchHits;
+
         private String scrollId;
 
+        private String cursor;
+
         private long total;
 
         private long count;
 
         private List<Map<String, Object>> source;
 
+        private Map<String, Object>[] sources;
+
         private Map<String, Aggregation> aggregations;
 
+        private boolean cursorParsed;
+
+        private boolean aggregationsParsed;
+
         public void init(SearchResponse searchResponse) {
             this.searchResponse = searchResponse;
+            searchHits = null == searchResponse.getHits() ? SearchHits.empty() : searchResponse.getHits();
             scrollId = searchResponse.getScrollId();
-            total = searchResponse.getHits().getTotalHits();
-            count = searchResponse.getHits().getHits().length;
-            source = parseSource();
-            aggregations = parseAggregations();
+            total = searchHits.getTotalHits();
+            count = searchHits.getHits().length;
+            cursor = null;
+            source = null;
+            sources = null;
+            aggregations = null;
+            cursorParsed = false;
+            aggregationsParsed = false;
         }
 
         /**
@@ -77,13 +195,27 @@ public class ElasticSearchQueryUtils {
          * @return List of data
          */
         public List<Map<String, Object>> parseSource() {
-            List<Map<String, Object>> result =
-                    new ArrayList<>(searchResponse.getHits().getHits().length);
-            this.searchResponse.getHits().iterator().forEachRemaining(
-                    item -> result.add(item.getSourceAsMap()));
+            int length = searchHits.getHits().length;
+            List<Map<String, Object>> result = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                result.add(sourceAt(i));
+            }
             return result;
         }
 
+        /**
+         * parseCursor
+         *
+         * @return cursor of last hit, null if no hits or not sorted
+         */
+        public String parseCursor() {
+            SearchHit[] hits = searchHits.getHits();
+            if (hits.length == 0) {
+                return null;
+            }
+            return ElasticSearchCursor.encode(hits[hits.length - 1].getSortValues());
+        }
+
         /**
          * parseAggregations
          *
@@ -102,7 +234,276 @@ public class ElasticSearchQueryUtils {
          * @return instance of Iterator
          */
         public Iterator<Map<String, Object>> iterator() {
-            return source.iterator();
+            return getSource().iterator();
+        }
+
+        /**
+         * 逐条解析 source
+         *
+         * @param action action of source
+         */
+        public void forEachSource(Consumer<Map<String, Object>> action) {
+            int length = searchHits.getHits().length;
+            for (int i = 0; i < length; i++) {
+                action.accept(sourceAt(i));
+            }
+        }
+
+        /**
+         * 解析第 index 条 source
+         *
+         * @param index index of hits
+         * @return source of hit
+         */
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> sourceAt(int index) {
+            if (null == sources) {
+                sources = new Map[searchHits.getHits().length];
+            }
+            if (null == sources[index]) {
+                BytesReference sourceRef = searchHits.getAt(index).getSourceRef();
+                if (null == sourceRef) {
+                    return null;
+                }
+                sources[index] = SourceLookup.sourceAsMap(sourceRef);
+            }
+            return sources[index];
+        }
+
+        /**
+         * 解析第 index 条 source 为 type
+         *
+         * @param index index of hits
+         * @param type  target type
+         * @param <T>   type
+         * @return instance of T
+         */
+        public <T> T sourceAt(int index, Class<T> type) {
+            return decode(ElasticSearchSourceCodec.of(type), searchHits.getAt(index));
+        }
+
+        /**
+         * 解析全部 source 为 type
+         *
+         * @param type target type
+         * @param <T>  type
+         * @return List of T
+         */
+        public <T> List<T> getSource(Class<T> type) {
+            ElasticSearchSourceCodec<T> codec = ElasticSearchSourceCodec.of(type);
+            SearchHit[] hits = searchHits.getHits();
+            List<T> result = new ArrayList<>(hits.length);
+            for (SearchHit hit : hits) {
+                result.add(decode(codec, hit));
+            }
+            return result;
+        }
+
+        /**
+         * 逐条解析 source 为 type
+         *
+         * @param type target type
+         * @param <T>  type
+         * @return Stream of T
+         */
+        public <T> Stream<T> stream(Class<T> type) {
+            ElasticSearchSourceCodec<T> codec = ElasticSearchSourceCodec.of(type);
+            return Arrays.stream(searchHits.getHits()).map(hit -> decode(codec, hit));
+        }
+
+        /**
+         * 第 index 条 source 的原始字节, 不解析
+         *
+         * @param index index of hits
+         * @return source bytes
+         */
+        public BytesReference sourceRefAt(int index) {
+            return searchHits.getAt(index).getSourceRef();
+        }
+
+        /**
+         * 逐条访问 source 的原始字节, 不解析
+         *
+         * @param action action of source bytes
+         */
+        public void forEachSourceRef(Consumer<BytesReference> action) {
+            for (SearchHit hit : searchHits.getHits()) {
+                action.accept(hit.getSourceRef());
+            }
+        }
+
+        /**
+         * 第 index 条的 docvalue_fields / stored_fields, 每个字段取第一个值
+         *
+         * @param index index of hits
+         * @return Map of field and value
+         */
+        public Map<String, Object> fieldsAt(int index) {
+            Map<String, DocumentField> fields = searchHits.getAt(index).getFields();
+            Map<String, Object> result = new HashMap<>(fields.size());
+            fields.forEach((name, field) -> result.put(name, field.getValue()));
+            return result;
+        }
+
+        /**
+         * 第 index 条字段的全部值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return List of values, empty if missing
+         */
+        public List<Object> fieldValuesAt(int index, String field) {
+            DocumentField documentField = searchHits.getAt(index).field(field);
+            return null == documentField ? Collections.emptyList() : documentField.getValues();
+        }
+
+        /**
+         * 第 index 条字段的第一个值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return value, null if missing
+         */
+        public Object fieldAt(int index, String field) {
+            DocumentField documentField = searchHits.getAt(index).field(field);
+            return null == documentField ? null : documentField.getValue();
+        }
+
+        /**
+         * 第 index 条字段的第一个值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return value, null if missing
+         */
+        public Long longFieldAt(int index, String field) {
+            return TypeUtils.castToLong(fieldAt(index, field));
+        }
+
+        /**
+         * 第 index 条字段的第一个值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return value, null if missing
+         */
+        public Double doubleFieldAt(int index, String field) {
+            return TypeUtils.castToDouble(fieldAt(index, field));
+        }
+
+        /**
+         * 第 index 条字段的第一个值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return value, null if missing
+         */
+        public String stringFieldAt(int index, String field) {
+            return TypeUtils.castToString(fieldAt(index, field));
+        }
+
+        /**
+         * 第 index 条字段的第一个值
+         *
+         * @param index index of hits
+         * @param field field name
+         * @return value, null if missing
+         */
+        public Boolean booleanFieldAt(int index, String field) {
+            return TypeUtils.castToBoolean(fieldAt(index, field));
+        }
+
+        /**
+         * 全部结果中字段的第一个值
+         *
+         * @param field   field name
+         * @param missing value if missing
+         * @return Array of values
+         */
+        public long[] longColumn(String field, long missing) {
+            SearchHit[] hits = searchHits.getHits();
+            long[] result = new long[hits.length];
+            for (int i = 0; i < hits.length; i++) {
+                DocumentField documentField = hits[i].field(field);
+                Object value = null == documentField ? null : documentField.getValue();
+                result[i] = value instanceof Number ? ((Number) value).longValue() :
+                        null == value ? missing : TypeUtils.castToLong(value);
+            }
+            return result;
+        }
+
+        /**
+         * 全部结果中字段的第一个值
+         *
+         * @param field   field name
+         * @param missing value if missing
+         * @return Array of values
+         */
+        public double[] doubleColumn(String field, double missing) {
+            SearchHit[] hits = searchHits.getHits();
+            double[] result = new double[hits.length];
+            for (int i = 0; i < hits.length; i++) {
+                DocumentField documentField = hits[i].field(field);
+                Object value = null == documentField ? null : documentField.getValue();
+                result[i] = value instanceof Number ? ((Number) value).doubleValue() :
+                        null == value ? missing : TypeUtils.castToDouble(value);
+            }
+            return result;
+        }
+
+        /**
+         * 以 JSON 输出, 结构同 {@link #toString()}, source 原样写出, 不关闭 out
+         *
+         * @param out instance of OutputStream
+         * @throws IOException if write failed
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            try (XContentBuilder builder = new XContentBuilder(XContentType.JSON.xContent(),
+                    new NonClosingOutputStream(out))) {
+                builder.startObject();
+                builder.field("scrollId", scrollId);
+                builder.field("cursor", getCursor());
+                builder.field("total", total);
+                builder.field("count", count);
+                builder.startArray("source");
+                for (SearchHit hit : searchHits.getHits()) {
+                    BytesReference sourceRef = hit.getSourceRef();
+                    if (null == sourceRef) {
+                        builder.nullValue();
+                    } else {
+                        BytesRef bytes = sourceRef.toBytesRef();
+                        XContentType xContentType = XContentFactory.xContentType(bytes.bytes, bytes.offset,
+                                bytes.length);
+                        builder.rawValue(sourceRef.streamInput(),
+                                null == xContentType ? XContentType.JSON : xContentType);
+                    }
+                }
+                builder.endArray();
+                if (null != searchResponse.getAggregations()) {
+                    searchResponse.getAggregations().toXContent(builder, ToXContent.EMPTY_PARAMS);
+                } else {
+                    builder.nullField("aggregations");
+                }
+                builder.endObject();
+            }
+        }
+
+        /**
+         * 以 JSON 输出, 结构同 {@link #toString()}, source 原样写出, 不关闭 channel
+         *
+         * @param channel instance of WritableByteChannel
+         * @throws IOException if write failed
+         */
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            writeTo(Channels.newOutputStream(channel));
+        }
+
+        private static <T> T decode(ElasticSearchSourceCodec<T> codec, SearchHit hit) {
+            try {
+                return codec.decode(hit.getSourceRef());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
         /**
@@ -114,6 +515,19 @@ public class ElasticSearchQueryUtils {
             return scrollId;
         }
 
+        /**
+         * getCursor
+         *
+         * @return cursor for search_after
+         */
+        public String getCursor() {
+            if (!cursorParsed) {
+                cursor = parseCursor();
+                cursorParsed = true;
+            }
+            return cursor;
+        }
+
         /**
          * get Total
          *
@@ -138,6 +552,9 @@ public class ElasticSearchQueryUtils {
          * @return List of data
          */
         public List<Map<String, Object>> getSource() {
+            if (null == source) {
+                source = parseSource();
+            }
             return source;
         }
 
@@ -156,22 +573,47 @@ public class ElasticSearchQueryUtils {
          * @return Map of Aggregation
          */
         public Map<String, Aggregation> getAggregations() {
+            if (!aggregationsParsed) {
+                aggregations = parseAggregations();
+                aggregationsParsed = true;
+            }
             return aggregations;
         }
 
         @Override
         public String toString() {
-            Map<String, Object> jsonMap = new HashMap<>(5);
+            Map<String, Object> jsonMap = new HashMap<>(6);
             jsonMap.put("scrollId", scrollId);
+            jsonMap.put("cursor", getCursor());
             jsonMap.put("total", total);
             jsonMap.put("count", count);
-            jsonMap.put("source", source);
-            jsonMap.put("aggregations", aggregations);
+            jsonMap.put("source", getSource());
+            jsonMap.put("aggregations", getAggregations());
             return toJSONString(jsonMap);
         }
 
     }
 
+    /**
+     * 关闭时只 flush 的 OutputStream
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     /**
      * result
      *
@@ -344,6 +786,190 @@ public class ElasticSearchQueryUtils {
         return query(searchRequest);
     }
 
+    /**
+     * 查询并解析 source 为 type
+     *
+     * @param index  index name
+     * @param search Map of search
+     * @param size   size
+     * @param from   start
+     * @param sort   sort setting
+     * @param type   target type
+     * @param <T>    type
+     * @return List of T, null if failed
+     */
+    public <T> List<T> search(String index, Map<String, Object> search, int size, int from,
+                              Map<String, Integer> sort, Class<T> type) {
+        return search(index, ElasticSearchQueryBuilder.build(search), size, from, sort, type);
+    }
+
+    /**
+     * 查询并解析 source 为 type
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @param size         size
+     * @param from         start
+     * @param sort         sort setting
+     * @param type         target type
+     * @param <T>          type
+     * @return List of T, null if failed
+     */
+    public <T> List<T> search(String index, QueryBuilder queryBuilder, int size, int from,
+                              Map<String, Integer> sort, Class<T> type) {
+        Stream<T> stream = searchStream(index, queryBuilder, size, from, sort, type);
+        return null == stream ? null : stream.collect(Collectors.toList());
+    }
+
+    /**
+     * 查询并逐条解析 source 为 type
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @param size         size
+     * @param from         start
+     * @param sort         sort setting
+     * @param type         target type
+     * @param <T>          type
+     * @return Stream of T, null if failed
+     */
+    public <T> Stream<T> searchStream(String index, QueryBuilder queryBuilder, int size, int from,
+                                      Map<String, Integer> sort, Class<T> type) {
+        SearchResponse searchResponse = query(buildRequest(index, queryBuilder, size, from,
+                QUERY_TIME_VALUE_SECONDS_NULL, sort, null, null));
+        if (null == searchResponse) {
+            return null;
+        }
+        return result(searchResponse).stream(type);
+    }
+
+    /**
+     * search_after 分页查询, 首页 cursor 为 null, 之后传入上一页的 {@link Result#getCursor()};
+     * 仅首页统计 total
+     *
+     * @param index         index name
+     * @param search        Map of search
+     * @param size          size
+     * @param sort          sort setting
+     * @param cursor        cursor of previous page
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return instance of Result
+     */
+    public Result searchAfter(String index, Map<String, Object> search, int size,
+                              Map<String, Integer> sort, String cursor, String[] includeFields,
+                              String[] excludeFields) {
+        return searchAfter(index, ElasticSearchQueryBuilder.build(search), size, sort, cursor,
+                includeFields, excludeFields);
+    }
+
+    /**
+     * search_after 分页查询, 首页 cursor 为 null, 之后传入上一页的 {@link Result#getCursor()};
+     * 仅首页统计 total
+     *
+     * @param index         index name
+     * @param queryBuilder  instance of QueryBuilder
+     * @param size          size
+     * @param sort          sort setting
+     * @param cursor        cursor of previous page
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return instance of Result
+     */
+    public Result searchAfter(String index, QueryBuilder queryBuilder, int size,
+                              Map<String, Integer> sort, String cursor, String[] includeFields,
+                              String[] excludeFields) {
+        SearchResponse searchResponse = query(buildSearchAfterRequest(index, queryBuilder, size, sort,
+                cursor, includeFields, excludeFields));
+        if (null == searchResponse) {
+            return null;
+        }
+        return result(searchResponse);
+    }
+
+    /**
+     * 通过 docvalue_fields 查询, 不读取 _source, 字段值通过 {@link Result#fieldAt(int, String)} 等获取
+     *
+     * @param index  index name
+     * @param search Map of search
+     * @param size   size
+     * @param from   start
+     * @param sort   sort setting
+     * @param fields docvalue fields
+     * @return instance of Result, null if failed
+     */
+    public Result searchDocValues(String index, Map<String, Object> search, int size, int from,
+                                  Map<String, Integer> sort, String... fields) {
+        return searchDocValues(index, ElasticSearchQueryBuilder.build(search), size, from, sort, fields);
+    }
+
+    /**
+     * 通过 docvalue_fields 查询, 不读取 _source, 字段值通过 {@link Result#fieldAt(int, String)} 等获取
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @param size         size
+     * @param from         start
+     * @param sort         sort setting
+     * @param fields       docvalue fields
+     * @return instance of Result, null if failed
+     */
+    public Result searchDocValues(String index, QueryBuilder queryBuilder, int size, int from,
+                                  Map<String, Integer> sort, String... fields) {
+        SearchResponse searchResponse = query(buildFieldsRequest(index, queryBuilder, size, from, sort, fields,
+                true));
+        if (null == searchResponse) {
+            return null;
+        }
+        return result(searchResponse);
+    }
+
+    /**
+     * 通过 stored_fields 查询, 不读取 _source, 字段需在 mapping 中设置 store
+     *
+     * @param index  index name
+     * @param search Map of search
+     * @param size   size
+     * @param from   start
+     * @param sort   sort setting
+     * @param fields stored fields
+     * @return instance of Result, null if failed
+     */
+    public Result searchStoredFields(String index, Map<String, Object> search, int size, int from,
+                                     Map<String, Integer> sort, String... fields) {
+        return searchStoredFields(index, ElasticSearchQueryBuilder.build(search), size, from, sort, fields);
+    }
+
+    /**
+     * 通过 stored_fields 查询, 不读取 _source, 字段需在 mapping 中设置 store
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @param size         size
+     * @param from         start
+     * @param sort         sort setting
+     * @param fields       stored fields
+     * @return instance of Result, null if failed
+     */
+    public Result searchStoredFields(String index, QueryBuilder queryBuilder, int size, int from,
+                                     Map<String, Integer> sort, String... fields) {
+        SearchResponse searchResponse = query(buildFieldsRequest(index, queryBuilder, size, from, sort, fields,
+                false));
+        if (null == searchResponse) {
+            return null;
+        }
+        return result(searchResponse);
+    }
+
+    /**
+     * 设置 search_after 的唯一排序字段
+     *
+     * @param tiebreakerField field name
+     */
+    public void setTiebreakerField(String tiebreakerField) {
+        this.tiebreakerField = Objects.requireNonNull(tiebreakerField);
+    }
+
     /**
      * scroll
      *
@@ -374,6 +1000,32 @@ public class ElasticSearchQueryUtils {
         return null;
     }
 
+    /**
+     * 异步清除 scroll, 失败时记录日志并以 null 完成, 可在 client 的回调线程中调用
+     *
+     * @param scrollId scroll id
+     * @return CompletableFuture of ClearScrollResponse
+     */
+    public CompletableFuture<ClearScrollResponse> clearScrollAsync(String... scrollId) {
+        ClearScrollRequest scrollRequest = new ClearScrollRequest();
+        scrollRequest.setScrollIds(Arrays.asList(scrollId));
+        CompletableFuture<ClearScrollResponse> future = new CompletableFuture<>();
+        restHighLevelClient.clearScrollAsync(scrollRequest, RequestOptions.DEFAULT,
+                new ActionListener<ClearScrollResponse>() {
+                    @Override
+                    public void onResponse(ClearScrollResponse clearScrollResponse) {
+                        future.complete(clearScrollResponse);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        log.error(DEFAULT_ERROR_MSG, e);
+                        future.complete(null);
+                    }
+                });
+        return future;
+    }
+
     /**
      * 聚合
      *
@@ -385,15 +1037,8 @@ public class ElasticSearchQueryUtils {
     public SearchResponse aggregations(String indexName,
                                        List<AggregationBuilder> aggregationBuilders,
                                        List<Map<String, Object>>query) {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(indexName);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.fetchSource(false);
-        sourceBuilder.size(0);
-        sourceBuilder.query(ElasticSearchQueryBuilder.build(query));
-        aggregationBuilders.forEach(sourceBuilder::aggregation);
-        searchRequest.source(sourceBuilder);
-        return query(searchRequest);
+        return query(buildAggregationRequest(indexName, aggregationBuilders,
+                ElasticSearchQueryBuilder.build(query)));
     }
 
     /**
@@ -407,12 +1052,6 @@ public class ElasticSearchQueryUtils {
     public SearchResponse aggregations(String indexName,
                                        List<?> aggregations,
                                        Map<String, Object>query) {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(indexName);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.fetchSource(false);
-        sourceBuilder.size(0);
-        sourceBuilder.query(ElasticSearchQueryBuilder.build(query));
         List<AggregationBuilder> aggregationBuilderList = new ArrayList<>();
 
         aggregations.forEach(item -> {
@@ -422,9 +1061,8 @@ public class ElasticSearchQueryUtils {
                 aggregationBuilderList.addAll(ElasticSearchAggregationBuilder.build(item));
             }
         });
-        aggregationBuilderList.forEach(sourceBuilder::aggregation);
-        searchRequest.source(sourceBuilder);
-        return query(searchRequest);
+        return query(buildAggregationRequest(indexName, aggregationBuilderList,
+                ElasticSearchQueryBuilder.build(query)));
     }
 
     /**
@@ -438,17 +1076,10 @@ public class ElasticSearchQueryUtils {
     public SearchResponse aggregations(String indexName,
                                        Map<String, Object> aggregations,
                                        Map<String, Object>query) {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(indexName);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.fetchSource(false);
-        sourceBuilder.size(0);
-        sourceBuilder.query(ElasticSearchQueryBuilder.build(query));
         List<AggregationBuilder> aggregationBuilderList =
                 ElasticSearchAggregationBuilder.build(aggregations);
-        aggregationBuilderList.forEach(sourceBuilder::aggregation);
-        searchRequest.source(sourceBuilder);
-        return query(searchRequest);
+        return query(buildAggregationRequest(indexName, aggregationBuilderList,
+                ElasticSearchQueryBuilder.build(query)));
     }
 
     /**
@@ -462,15 +1093,8 @@ public class ElasticSearchQueryUtils {
     public SearchResponse aggregations(String indexName,
                                        List<AggregationBuilder> aggregationBuilders,
                                        String jsonString) {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(indexName);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.fetchSource(false);
-        sourceBuilder.size(0);
-        sourceBuilder.query(ElasticSearchQueryBuilder.build(jsonString));
-        aggregationBuilders.forEach(sourceBuilder::aggregation);
-        searchRequest.source(sourceBuilder);
-        return query(searchRequest);
+        return query(buildAggregationRequest(indexName, aggregationBuilders,
+                ElasticSearchQueryBuilder.build(jsonString)));
     }
 
 
@@ -498,14 +1122,7 @@ public class ElasticSearchQueryUtils {
      */
     public SearchResponse aggregations(String indexName,
                                        List<AggregationBuilder> aggregationBuilders) {
-        SearchRequest searchRequest = new SearchRequest();
-        searchRequest.indices(indexName);
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
-        sourceBuilder.fetchSource(false);
-        sourceBuilder.size(0);
-        aggregationBuilders.forEach(sourceBuilder::aggregation);
-        searchRequest.source(sourceBuilder);
-        return query(searchRequest);
+        return query(buildAggregationRequest(indexName, aggregationBuilders, null));
     }
 
 
@@ -522,6 +1139,134 @@ public class ElasticSearchQueryUtils {
         return aggregations(indexName, aggregationBuilderList);
     }
 
+    /**
+     * 计数
+     *
+     * @param index  index name
+     * @param search Map of search
+     * @return count of docs, -1 if failed
+     */
+    public long count(String index, Map<String, Object> search) {
+        return count(index, ElasticSearchQueryBuilder.build(search));
+    }
+
+    /**
+     * 计数
+     *
+     * @param index index name
+     * @param query List of search
+     * @return count of docs, -1 if failed
+     */
+    public long count(String index, List<Map<String, Object>> query) {
+        return count(index, ElasticSearchQueryBuilder.build(query));
+    }
+
+    /**
+     * 计数
+     *
+     * @param index      index name
+     * @param jsonString Json string of search
+     * @return count of docs, -1 if failed
+     */
+    public long count(String index, String jsonString) {
+        return count(index, ElasticSearchQueryBuilder.build(jsonString));
+    }
+
+    /**
+     * 计数, 通过 _count 接口, 只返回 count 字段
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @return count of docs, -1 if failed
+     */
+    public long count(String index, QueryBuilder queryBuilder) {
+        Request request = new Request("POST", null == index || index.isEmpty() ? "/_count" :
+                "/" + index + "/_count");
+        request.addParameter("filter_path", COUNT_FIELD);
+        try {
+            if (null != queryBuilder) {
+                XContentBuilder builder = XContentFactory.jsonBuilder();
+                builder.startObject().field("query", queryBuilder).endObject();
+                request.setJsonEntity(Strings.toString(builder));
+            }
+            Response response = restHighLevelClient.getLowLevelClient().performRequest(request);
+            try (InputStream content = response.getEntity().getContent();
+                 XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+                         LoggingDeprecationHandler.INSTANCE, content)) {
+                parser.nextToken();
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (COUNT_FIELD.equals(name)) {
+                        return parser.longValue();
+                    }
+                    parser.skipChildren();
+                }
+            }
+            log.error(DEFAULT_ERROR_MSG + "missing count of " + index);
+        } catch (IOException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+        }
+        return -1L;
+    }
+
+    /**
+     * 是否存在
+     *
+     * @param index  index name
+     * @param search Map of search
+     * @return true | false
+     */
+    public boolean exists(String index, Map<String, Object> search) {
+        return exists(index, ElasticSearchQueryBuilder.build(search));
+    }
+
+    /**
+     * 是否存在
+     *
+     * @param index index name
+     * @param query List of search
+     * @return true | false
+     */
+    public boolean exists(String index, List<Map<String, Object>> query) {
+        return exists(index, ElasticSearchQueryBuilder.build(query));
+    }
+
+    /**
+     * 是否存在
+     *
+     * @param index      index name
+     * @param jsonString Json string of search
+     * @return true | false
+     */
+    public boolean exists(String index, String jsonString) {
+        return exists(index, ElasticSearchQueryBuilder.build(jsonString));
+    }
+
+    /**
+     * 是否存在, 每个分片命中一条后即终止 (size=0, terminate_after=1)
+     *
+     * @param index        index name
+     * @param queryBuilder instance of QueryBuilder
+     * @return true | false
+     */
+    public boolean exists(String index, QueryBuilder queryBuilder) {
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.size(0);
+        sourceBuilder.terminateAfter(1);
+        sourceBuilder.fetchSource(false);
+        sourceBuilder.trackTotalHits(true);
+        if (null != queryBuilder) {
+            sourceBuilder.query(queryBuilder);
+        }
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(index);
+        searchRequest.source(sourceBuilder);
+        SearchResponse searchResponse = query(searchRequest);
+        return null != searchResponse && null != searchResponse.getHits()
+                && searchResponse.getHits().getTotalHits() > 0;
+    }
+
     /**
      * 查询
      *
@@ -529,16 +1274,238 @@ public class ElasticSearchQueryUtils {
      * @return instance of SearchResponse
      */
     public SearchResponse query(SearchRequest searchRequest) {
+        ElasticSearchSearchCache current = cache;
+        if (null != current) {
+            return current.execute(searchRequest, () -> flightQuery(searchRequest));
+        }
+        return flightQuery(searchRequest);
+    }
+
+    /**
+     * 查询, 相同请求执行中时等待其结果
+     *
+     * @param searchRequest instance of SearchRequest
+     * @return instance of SearchResponse
+     */
+    private SearchResponse flightQuery(SearchRequest searchRequest) {
+        ElasticSearchSingleFlight flight = singleFlight;
+        if (null != flight && null == searchRequest.scroll()) {
+            return flight.execute(ElasticSearchFingerprint.ofRequest(searchRequest), () -> doQuery(searchRequest));
+        }
+        return doQuery(searchRequest);
+    }
+
+    /**
+     * 查询, 可通过 _msearch 合并
+     *
+     * @param searchRequest instance of SearchRequest
+     * @return instance of SearchResponse
+     */
+    private SearchResponse doQuery(SearchRequest searchRequest) {
+        ElasticSearchSearchCoalescer current = coalescer;
+        if (null != current && null == searchRequest.scroll()) {
+            return coalescedQuery(current, searchRequest);
+        }
+        SearchResponse searchResponse = null;
+        try {
+            searchResponse = restHighLevelClient.search(searchRequest,
+                    requestOptions);
+        } catch (IOException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+        }
+        return searchResponse;
+    }
+
+    /**
+     * 查询, 使用指定的 filter_path, 不经过缓存和合并
+     *
+     * @param searchRequest instance of SearchRequest
+     * @param filterPath    filter paths, empty for no filtering
+     * @return instance of SearchResponse
+     */
+    public SearchResponse query(SearchRequest searchRequest, String... filterPath) {
         SearchResponse searchResponse = null;
         try {
             searchResponse = restHighLevelClient.search(searchRequest,
-                    RequestOptions.DEFAULT);
+                    options(filterPath));
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
         }
         return searchResponse;
     }
 
+    /**
+     * 通过 _msearch 合并查询, 异常处理同 {@link #query(SearchRequest)}
+     *
+     * @param current       instance of ElasticSearchSearchCoalescer
+     * @param searchRequest instance of SearchRequest
+     * @return instance of SearchResponse
+     */
+    private SearchResponse coalescedQuery(ElasticSearchSearchCoalescer current, SearchRequest searchRequest) {
+        try {
+            return current.submit(searchRequest).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(DEFAULT_ERROR_MSG, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            log.error(DEFAULT_ERROR_MSG, e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * 按配置设置 filter_path, 创建 _msearch 合并器、single flight 和结果缓存
+     */
+    @PostConstruct
+    public void init() {
+        if (coalesceEnabled && null == coalescer) {
+            setCoalescer(new ElasticSearchSearchCoalescer(restHighLevelClient, coalesceWindowMillis,
+                    coalesceMaxBatch, coalesceHistogramBuckets));
+        }
+        if (singleFlightEnabled && null == singleFlight) {
+            singleFlight = new ElasticSearchSingleFlight();
+        }
+        if (filterPathEnabled) {
+            setFilterPath(null == defaultFilterPath || defaultFilterPath.length == 0 ?
+                    ElasticSearchFilterPath.SEARCH : defaultFilterPath);
+        } else if (null != compression) {
+            setCompression(compression);
+        }
+        if (cacheEnabled && null == cache) {
+            ElasticSearchSearchCache searchCache = new ElasticSearchSearchCache(cacheMaxBytes,
+                    TimeUnit.SECONDS.toMillis(cacheTtlSeconds), cacheRefreshMillis);
+            searchCache.setTtl(cacheIndexTtl);
+            cache = searchCache;
+        }
+    }
+
+    /**
+     * 设置 search/scroll 的默认 filter_path, 包括 _msearch 合并的请求
+     *
+     * @param filterPath filter paths, empty for no filtering, default profile is {@link ElasticSearchFilterPath#SEARCH}
+     */
+    public void setFilterPath(String... filterPath) {
+        this.filterPath = filterPath;
+        updateRequestOptions();
+    }
+
+    /**
+     * 设置 search/scroll 接受 gzip 响应, 包括 _msearch 合并的请求, null 为关闭
+     *
+     * @param compression instance of ElasticSearchCompression
+     */
+    public void setCompression(ElasticSearchCompression compression) {
+        this.compression = compression;
+        updateRequestOptions();
+    }
+
+    private void updateRequestOptions() {
+        requestOptions = options(filterPath);
+        ElasticSearchSearchCoalescer current = coalescer;
+        if (null != current) {
+            current.setRequestOptions(requestOptions);
+        }
+    }
+
+    private RequestOptions options(String... filterPath) {
+        RequestOptions options = ElasticSearchFilterPath.options(RequestOptions.DEFAULT, filterPath);
+        ElasticSearchCompression current = compression;
+        return null == current ? options : current.options(options);
+    }
+
+    /**
+     * search/scroll 使用的 RequestOptions
+     *
+     * @return instance of RequestOptions
+     */
+    public RequestOptions getRequestOptions() {
+        return requestOptions;
+    }
+
+    /**
+     * 设置结果缓存, null 为关闭
+     *
+     * @param cache instance of ElasticSearchSearchCache
+     */
+    public void setCache(ElasticSearchSearchCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * 结果缓存, 可读取命中数等统计
+     *
+     * @return instance of ElasticSearchSearchCache, null if disabled
+     */
+    public ElasticSearchSearchCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 写入后失效 index 的缓存
+     *
+     * @param indices index names
+     */
+    public void invalidate(String... indices) {
+        ElasticSearchSearchCache current = cache;
+        if (null != current) {
+            current.invalidate(indices);
+        }
+    }
+
+    /**
+     * 设置 single flight, null 为关闭
+     *
+     * @param singleFlight instance of ElasticSearchSingleFlight
+     */
+    public void setSingleFlight(ElasticSearchSingleFlight singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * single flight, 可读取重复请求合并数
+     *
+     * @return instance of ElasticSearchSingleFlight, null if disabled
+     */
+    public ElasticSearchSingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * 关闭 _msearch 合并器
+     */
+    @PreDestroy
+    public void closeCoalescer() {
+        setCoalescer(null);
+    }
+
+    /**
+     * 设置 _msearch 合并器, null 为关闭合并
+     *
+     * @param coalescer instance of ElasticSearchSearchCoalescer
+     */
+    public void setCoalescer(ElasticSearchSearchCoalescer coalescer) {
+        ElasticSearchSearchCoalescer previous = this.coalescer;
+        if (null != coalescer) {
+            coalescer.setRequestOptions(requestOptions);
+        }
+        this.coalescer = coalescer;
+        if (null != previous && previous != coalescer) {
+            previous.close();
+        }
+    }
+
+    /**
+     * _msearch 合并器
+     *
+     * @return instance of ElasticSearchSearchCoalescer, null if disabled
+     */
+    public ElasticSearchSearchCoalescer getCoalescer() {
+        return coalescer;
+    }
+
     /**
      * Scroll查询
      *
@@ -549,13 +1516,364 @@ public class ElasticSearchQueryUtils {
         SearchResponse searchResponse = null;
         try {
             searchResponse = restHighLevelClient.scroll(searchScrollRequest,
-                    RequestOptions.DEFAULT);
+                    requestOptions);
+        } catch (IOException e) {
+            log.error(DEFAULT_ERROR_MSG, e);
+        }
+        return searchResponse;
+    }
+
+    /**
+     * Scroll查询, 使用指定的 filter_path
+     *
+     * @param searchScrollRequest instance of SearchScrollRequest
+     * @param filterPath          filter paths, empty for no filtering
+     * @return instance of SearchResponse
+     */
+    public SearchResponse query(SearchScrollRequest searchScrollRequest, String... filterPath) {
+        SearchResponse searchResponse = null;
+        try {
+            searchResponse = restHighLevelClient.scroll(searchScrollRequest,
+                    options(filterPath));
         } catch (IOException e) {
             log.error(DEFAULT_ERROR_MSG, e);
         }
         return searchResponse;
     }
 
+    /**
+     * 设置异步回调的执行器
+     *
+     * @param callbackExecutor instance of Executor
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = Objects.requireNonNull(callbackExecutor);
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param index         index name
+     * @param search        Map of search
+     * @param size          size
+     * @param from          start
+     * @param sort          sort setting
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, Map<String, Object> search,
+                                                         int size, int from,
+                                                         Map<String, Integer> sort,
+                                                         String[] includeFields,
+                                                         String[] excludeFields) {
+        return queryAsync(buildRequest(index, search, size, from, QUERY_TIME_VALUE_SECONDS_NULL, sort,
+                includeFields, excludeFields));
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param index         index name
+     * @param query         List of query
+     * @param size          size
+     * @param from          start
+     * @param sort          sort setting
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, List<Map<String, Object>> query,
+                                                         int size, int from,
+                                                         Map<String, Integer> sort,
+                                                         String[] includeFields,
+                                                         String[] excludeFields) {
+        return queryAsync(buildRequest(index, query, size, from, QUERY_TIME_VALUE_SECONDS_NULL, sort,
+                includeFields, excludeFields));
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param index         index name
+     * @param jsonString    Json string of query
+     * @param size          size
+     * @param from          start
+     * @param sort          sort setting
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, String jsonString, int size,
+                                                         int from, Map<String, Integer> sort,
+                                                         String[] includeFields,
+                                                         String[] excludeFields) {
+        return queryAsync(buildRequest(index, jsonString, size, from, QUERY_TIME_VALUE_SECONDS_NULL,
+                sort, includeFields, excludeFields));
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param index         index name
+     * @param queryBuilder  instance of QueryBuilder
+     * @param size          size
+     * @param from          start
+     * @param sort          sort setting
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String index, QueryBuilder queryBuilder,
+                                                         int size, int from,
+                                                         Map<String, Integer> sort,
+                                                         String[] includeFields,
+                                                         String[] excludeFields) {
+        return queryAsync(buildRequest(index, queryBuilder, size, from, QUERY_TIME_VALUE_SECONDS_NULL,
+                sort, includeFields, excludeFields));
+    }
+
+    /**
+     * 异步 scroll
+     *
+     * @param scrollId         scroll id
+     * @param timeValueSeconds timeout seconds
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> scrollAsync(String scrollId, long timeValueSeconds) {
+        SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
+        scrollRequest.scroll(TimeValue.timeValueSeconds(timeValueSeconds));
+        return queryAsync(scrollRequest);
+    }
+
+    /**
+     * 异步聚合
+     *
+     * @param indexName    index name
+     * @param aggregations Map of aggregation
+     * @param query        Map of search
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> aggregationsAsync(String indexName,
+                                                               Map<String, Object> aggregations,
+                                                               Map<String, Object> query) {
+        return queryAsync(buildAggregationRequest(indexName,
+                ElasticSearchAggregationBuilder.build(aggregations), ElasticSearchQueryBuilder.build(query)));
+    }
+
+    /**
+     * 异步查询
+     *
+     * @param searchRequest instance of SearchRequest
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> queryAsync(SearchRequest searchRequest) {
+        return queryAsync(searchRequest, callbackExecutor);
+    }
+
+    /**
+     * 异步查询, 取消 future 时关闭对应的 HTTP 连接
+     *
+     * @param searchRequest instance of SearchRequest
+     * @param executor      executor of callbacks
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> queryAsync(SearchRequest searchRequest, Executor executor) {
+        ElasticSearchRequestCancellation.Handle handle =
+                ElasticSearchRequestCancellation.register(requestOptions);
+        CompletableFuture<SearchResponse> future = cancellable(handle);
+        restHighLevelClient.searchAsync(searchRequest, handle.getOptions(), listener(future, handle, executor));
+        return future;
+    }
+
+    /**
+     * 异步 Scroll 查询
+     *
+     * @param searchScrollRequest instance of SearchScrollRequest
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> queryAsync(SearchScrollRequest searchScrollRequest) {
+        return queryAsync(searchScrollRequest, callbackExecutor);
+    }
+
+    /**
+     * 异步 Scroll 查询, 取消 future 时关闭对应的 HTTP 连接
+     *
+     * @param searchScrollRequest instance of SearchScrollRequest
+     * @param executor            executor of callbacks
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> queryAsync(SearchScrollRequest searchScrollRequest,
+                                                        Executor executor) {
+        ElasticSearchRequestCancellation.Handle handle =
+                ElasticSearchRequestCancellation.register(requestOptions);
+        CompletableFuture<SearchResponse> future = cancellable(handle);
+        restHighLevelClient.scrollAsync(searchScrollRequest, handle.getOptions(),
+                listener(future, handle, executor));
+        return future;
+    }
+
+    /**
+     * 异步查询, 返回 Result
+     *
+     * @param searchRequest instance of SearchRequest
+     * @return CompletableFuture of Result
+     */
+    public CompletableFuture<Result> resultAsync(SearchRequest searchRequest) {
+        return thenApply(queryAsync(searchRequest), ElasticSearchQueryUtils::result);
+    }
+
+    /**
+     * 异步 Scroll 查询, 返回 Result
+     *
+     * @param searchScrollRequest instance of SearchScrollRequest
+     * @return CompletableFuture of Result
+     */
+    public CompletableFuture<Result> resultAsync(SearchScrollRequest searchScrollRequest) {
+        return thenApply(queryAsync(searchScrollRequest), ElasticSearchQueryUtils::result);
+    }
+
+    /**
+     * thenApply, 取消返回的 future 时同时取消 source
+     *
+     * @param source source future
+     * @param fn     function
+     * @param <T>    type of source
+     * @param <R>    type of result
+     * @return CompletableFuture
+     */
+    public static <T, R> CompletableFuture<R> thenApply(CompletableFuture<T> source, Function<T, R> fn) {
+        CompletableFuture<R> future = source.thenApply(fn);
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> cancellable(ElasticSearchRequestCancellation.Handle handle) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                handle.cancel();
+            }
+        });
+        return future;
+    }
+
+    private static <T> ActionListener<T> listener(CompletableFuture<T> future,
+                                                  ElasticSearchRequestCancellation.Handle handle,
+                                                  Executor executor) {
+        return new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                handle.release();
+                execute(executor, () -> future.complete(response));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                handle.release();
+                execute(executor, () -> future.completeExceptionally(e));
+            }
+        };
+    }
+
+    private static void execute(Executor executor, Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * 构建聚合的SearchRequest
+     *
+     * @param indexName           index name
+     * @param aggregationBuilders List of AggregationBuilder's instance
+     * @param query               instance of QueryBuilder
+     * @return instance of SearchRequest
+     */
+    protected SearchRequest buildAggregationRequest(String indexName,
+                                                    List<AggregationBuilder> aggregationBuilders,
+                                                    QueryBuilder query) {
+        SearchRequest searchRequest = new SearchRequest();
+        searchRequest.indices(indexName);
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.fetchSource(false);
+        sourceBuilder.size(0);
+        if (null != query) {
+            sourceBuilder.query(query);
+        }
+        aggregationBuilders.forEach(sourceBuilder::aggregation);
+        searchRequest.source(sourceBuilder);
+        return searchRequest;
+    }
+
+    /**
+     * 构建按字段取值的 SearchRequest, 关闭 _source
+     *
+     * @param index     index name
+     * @param query     instance of QueryBuilder
+     * @param size      size
+     * @param from      start
+     * @param sort      sort setting
+     * @param fields    fields
+     * @param docValues true for docvalue_fields, false for stored_fields
+     * @return instance of SearchRequest
+     */
+    protected SearchRequest buildFieldsRequest(String index, QueryBuilder query, int size, int from,
+                                               Map<String, Integer> sort, String[] fields, boolean docValues) {
+        SearchRequest searchRequest = buildRequest(index, query, size, from, QUERY_TIME_VALUE_SECONDS_NULL, sort,
+                null, null);
+        SearchSourceBuilder searchSource = searchRequest.source();
+        searchSource.fetchSource(false);
+        if (null == fields) {
+            return searchRequest;
+        }
+        if (docValues) {
+            for (String field : fields) {
+                searchSource.docValueField(field, DocValueFieldsContext.USE_DEFAULT_FORMAT);
+            }
+        } else {
+            searchSource.storedFields(Arrays.asList(fields));
+        }
+        return searchRequest;
+    }
+
+    /**
+     * 构建 search_after 的 SearchRequest, 追加唯一排序字段
+     *
+     * @param index         index name
+     * @param query         instance of QueryBuilder
+     * @param size          size
+     * @param sort          sort setting
+     * @param cursor        cursor of previous page
+     * @param includeFields include fields
+     * @param excludeFields exclude fields
+     * @return instance of SearchRequest
+     */
+    protected SearchRequest buildSearchAfterRequest(String index, QueryBuilder query, int size,
+                                                    Map<String, Integer> sort, String cursor,
+                                                    String[] includeFields, String[] excludeFields) {
+        SearchRequest searchRequest = buildRequest(index, query, size, QUERY_FORM_NULL,
+                QUERY_TIME_VALUE_SECONDS_NULL, null == sort || sort.isEmpty() ? null : sort, includeFields,
+                excludeFields);
+        SearchSourceBuilder searchSource = searchRequest.source();
+        boolean sorted = null != searchSource.sorts() && searchSource.sorts().stream().anyMatch(item ->
+                item instanceof FieldSortBuilder && tiebreakerField.equals(((FieldSortBuilder) item).getFieldName()));
+        if (!sorted) {
+            searchSource.sort(SortBuilders.fieldSort(tiebreakerField).order(SortOrder.ASC));
+        }
+        if (null != cursor) {
+            searchSource.searchAfter(ElasticSearchCursor.decode(cursor));
+            searchSource.trackTotalHits(false);
+        }
+        return searchRequest;
+    }
+
     /**
      * 构建SearchRequest
      *
@@ -0,0 +1,502 @@
+package com.loeyae.tools.es_utils.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * elastic search scroll.
+ *
+ * 分片(slice)并行 scroll: 每个 slice 由独立线程驱动, 数据通过串行化的回调或合并的迭代器输出,
+ * 结束或失败时清理全部 scroll id.
+ * 流式 scroll: 消费当前批次时后台预取后续批次, 关闭或失败时清理 scroll id.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+@Component
+public class ElasticSearchScrollUtils {
+
+    private static final String DEFAULT_ERROR_MSG = "ES Error: ";
+
+    public static final long DEFAULT_SCROLL_SECONDS = 60L;
+
+    public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    public static final int MAX_PREFETCH = 2;
+
+    @Autowired
+    RestHighLevelClient restHighLevelClient;
+
+    @Autowired
+    ElasticSearchQueryUtils queryUtils;
+
+    @Autowired
+    ElasticSearchIndicesUtils indicesUtils;
+
+    /**
+     * slice 并行 scroll
+     *
+     * @param index            index name
+     * @param search           Map of search
+     * @param size             size of each scroll page
+     * @param timeValueSeconds scroll timeout seconds
+     * @param slices           count of slices, &lt;= 0 for the shard count of index
+     * @param consumer         consumer of source, called serially
+     * @return count of hits, -1 if failed
+     */
+    public long slicedScroll(String index, Map<String, Object> search, int size, long timeValueSeconds,
+                             int slices, Consumer<Map<String, Object>> consumer) {
+        SearchRequest searchRequest = queryUtils.buildRequest(index, search, size,
+                ElasticSearchQueryUtils.QUERY_FORM_NULL, timeValueSeconds, null, null, null);
+        return slicedScroll(searchRequest, slices, hit -> consumer.accept(hit.getSourceAsMap()));
+    }
+
+    /**
+     * slice 并行 scroll
+     *
+     * @param searchRequest instance of SearchRequest, scroll defaults to 60s
+     * @param slices        count of slices, &lt;= 0 for the shard count of index
+     * @param consumer      consumer of SearchHit, called serially
+     * @return count of hits, -1 if failed
+     */
+    public long slicedScroll(SearchRequest searchRequest, int slices, Consumer<SearchHit> consumer) {
+        int max = slices > 0 ? slices : Math.max(1, indicesUtils.shardCount(searchRequest.indices()));
+        Scroll scroll = null != searchRequest.scroll() ? searchRequest.scroll() :
+                new Scroll(TimeValue.timeValueSeconds(DEFAULT_SCROLL_SECONDS));
+        SearchSourceBuilder source = null != searchRequest.source() ? searchRequest.source() :
+                new SearchSourceBuilder();
+        Map<Integer, String> scrollIds = new ConcurrentHashMap<>(max);
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicLong count = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(max, threadFactory());
+        try {
+            List<Future<?>> futures = new ArrayList<>(max);
+            for (int i = 0; i < max; i++) {
+                int slice = i;
+                SearchRequest sliceRequest = new SearchRequest(searchRequest);
+                sliceRequest.scroll(scroll);
+                sliceRequest.source(max > 1 ? source.copyWithNewSlice(new SliceBuilder(slice, max)) : source);
+                futures.add(executor.submit(() -> {
+                    try {
+                        scrollSlice(slice, sliceRequest, scroll, scrollIds, failed, count, consumer);
+                    } catch (IOException | RuntimeException e) {
+                        failed.set(true);
+                        log.error(DEFAULT_ERROR_MSG, e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failed.set(true);
+            log.error(DEFAULT_ERROR_MSG, e);
+        } finally {
+            executor.shutdownNow();
+            if (!scrollIds.isEmpty()) {
+                queryUtils.clearScroll(new HashSet<>(scrollIds.values()).toArray(new String[0]));
+            }
+        }
+        return failed.get() ? -1 : count.get();
+    }
+
+    /**
+     * slice 并行 scroll, 合并为一个迭代器
+     *
+     * @param searchRequest instance of SearchRequest, scroll defaults to 60s
+     * @param slices        count of slices, &lt;= 0 for the shard count of index
+     * @param bufferSize    max buffered hits
+     * @return instance of ScrollIterator, must be closed
+     */
+    public ScrollIterator slicedScrollIterator(SearchRequest searchRequest, int slices, int bufferSize) {
+        ScrollIterator iterator = new ScrollIterator(bufferSize);
+        Thread thread = new Thread(() -> iterator.finish(slicedScroll(searchRequest, slices, iterator::offer)),
+                "es-utils-sliced-scroll");
+        thread.setDaemon(true);
+        iterator.producer = thread;
+        thread.start();
+        return iterator;
+    }
+
+    /**
+     * 流式 scroll
+     *
+     * @param index            index name
+     * @param search           Map of search
+     * @param size             size of each scroll page
+     * @param timeValueSeconds scroll timeout seconds
+     * @param prefetch         count of prefetched batches, 1 or 2
+     * @return Stream of source, must be closed
+     */
+    public Stream<Map<String, Object>> scrollStream(String index, Map<String, Object> search, int size,
+                                                    long timeValueSeconds, int prefetch) {
+        SearchRequest searchRequest = queryUtils.buildRequest(index, search, size,
+                ElasticSearchQueryUtils.QUERY_FORM_NULL, timeValueSeconds, null, null, null);
+        return scrollStream(searchRequest, prefetch).map(SearchHit::getSourceAsMap);
+    }
+
+    /**
+     * 流式 scroll
+     *
+     * @param searchRequest instance of SearchRequest, scroll defaults to 60s
+     * @param prefetch      count of prefetched batches, 1 or 2
+     * @return Stream of SearchHit, must be closed
+     */
+    public Stream<SearchHit> scrollStream(SearchRequest searchRequest, int prefetch) {
+        return scrollIterator(searchRequest, prefetch).stream();
+    }
+
+    /**
+     * 预取 scroll 迭代器
+     *
+     * @param searchRequest instance of SearchRequest, scroll defaults to 60s
+     * @param prefetch      count of prefetched batches, 1 or 2
+     * @return instance of PrefetchScrollIterator, must be closed
+     */
+    public PrefetchScrollIterator scrollIterator(SearchRequest searchRequest, int prefetch) {
+        if (prefetch < 1 || prefetch > MAX_PREFETCH) {
+            throw new IllegalArgumentException("prefetch must be between 1 and " + MAX_PREFETCH);
+        }
+        if (null == searchRequest.scroll()) {
+            searchRequest.scroll(TimeValue.timeValueSeconds(DEFAULT_SCROLL_SECONDS));
+        }
+        return new PrefetchScrollIterator(queryUtils, searchRequest, prefetch);
+    }
+
+    /**
+     * 驱动单个 slice
+     */
+    private void scrollSlice(int slice, SearchRequest sliceRequest, Scroll scroll, Map<Integer, String> scrollIds,
+                             AtomicBoolean failed, AtomicLong count, Consumer<SearchHit> consumer)
+            throws IOException {
+        SearchResponse searchResponse = restHighLevelClient.search(sliceRequest, queryUtils.getRequestOptions());
+        while (!failed.get()) {
+            if (null != searchResponse.getScrollId()) {
+                scrollIds.put(slice, searchResponse.getScrollId());
+            }
+            SearchHit[] hits = hits(searchResponse);
+            if (hits.length == 0) {
+                break;
+            }
+            synchronized (consumer) {
+                for (SearchHit hit : hits) {
+                    consumer.accept(hit);
+                }
+            }
+            count.addAndGet(hits.length);
+            SearchScrollRequest scrollRequest = new SearchScrollRequest(searchResponse.getScrollId());
+            scrollRequest.scroll(scroll);
+            searchResponse = restHighLevelClient.scroll(scrollRequest, queryUtils.getRequestOptions());
+        }
+    }
+
+    /**
+     * 响应中的 hits, 被 filter_path 全部裁剪时为空
+     */
+    private static SearchHit[] hits(SearchResponse searchResponse) {
+        return null == searchResponse.getHits() ? new SearchHit[0] : searchResponse.getHits().getHits();
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "es-utils-slice-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 预取 scroll 迭代器, 内存中最多保留当前批次和 prefetch 个预取批次
+     */
+    public static class PrefetchScrollIterator implements Iterator<SearchHit>, AutoCloseable {
+
+        private static final Executor DIRECT = Runnable::run;
+
+        private final ElasticSearchQueryUtils queryUtils;
+
+        private final Scroll scroll;
+
+        private final int prefetch;
+
+        private final Deque<CompletableFuture<SearchResponse>> batches = new ArrayDeque<>();
+
+        private CompletableFuture<SearchResponse> last;
+
+        private final Set<String> scrollIds = new HashSet<>();
+
+        private volatile CompletableFuture<SearchResponse> inflight;
+
+        private volatile boolean closed;
+
+        private boolean exhausted;
+
+        private SearchHit[] hits = new SearchHit[0];
+
+        private int position;
+
+        PrefetchScrollIterator(ElasticSearchQueryUtils queryUtils, SearchRequest searchRequest, int prefetch) {
+            this.queryUtils = queryUtils;
+            this.scroll = searchRequest.scroll();
+            this.prefetch = prefetch;
+            CompletableFuture<SearchResponse> first = queryUtils.queryAsync(searchRequest, DIRECT);
+            inflight = first;
+            last = first.thenApply(this::track);
+            batches.add(last);
+        }
+
+        /**
+         * 预取后续批次, 上一批次为空时不再请求
+         */
+        private void fill() {
+            while (batches.size() < prefetch) {
+                last = last.thenCompose(searchResponse -> {
+                    if (closed || hits(searchResponse).length == 0) {
+                        return CompletableFuture.completedFuture(searchResponse);
+                    }
+                    SearchScrollRequest scrollRequest = new SearchScrollRequest(searchResponse.getScrollId());
+                    scrollRequest.scroll(scroll);
+                    CompletableFuture<SearchResponse> next = queryUtils.queryAsync(scrollRequest, DIRECT);
+                    inflight = next;
+                    return next.thenApply(this::track);
+                });
+                batches.add(last);
+            }
+        }
+
+        /**
+         * 记录 scroll id, 关闭后返回的 scroll id 立即清理
+         */
+        private SearchResponse track(SearchResponse searchResponse) {
+            String scrollId = searchResponse.getScrollId();
+            if (null != scrollId) {
+                boolean clear;
+                synchronized (scrollIds) {
+                    scrollIds.add(scrollId);
+                    clear = closed;
+                }
+                if (clear) {
+                    clearScroll();
+                }
+            }
+            return searchResponse;
+        }
+
+        private void clearScroll() {
+            String[] ids;
+            synchronized (scrollIds) {
+                if (scrollIds.isEmpty()) {
+                    return;
+                }
+                ids = scrollIds.toArray(new String[0]);
+                scrollIds.clear();
+            }
+            // track 在 client 的 I/O 线程中执行, 不能发起同步请求
+            queryUtils.clearScrollAsync(ids);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position >= hits.length) {
+                if (exhausted || closed) {
+                    return false;
+                }
+                SearchResponse searchResponse;
+                try {
+                    searchResponse = batches.poll().join();
+                } catch (CompletionException | CancellationException e) {
+                    close();
+                    Throwable cause = null != e.getCause() ? e.getCause() : e;
+                    if (cause instanceof IOException) {
+                        throw new UncheckedIOException((IOException) cause);
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw e;
+                }
+                hits = hits(searchResponse);
+                position = 0;
+                if (hits.length == 0) {
+                    exhausted = true;
+                    close();
+                    return false;
+                }
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public SearchHit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return hits[position++];
+        }
+
+        /**
+         * Spliterator
+         *
+         * @return instance of Spliterator
+         */
+        public Spliterator<SearchHit> spliterator() {
+            return Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+
+        /**
+         * Stream, 关闭 Stream 时关闭迭代器
+         *
+         * @return Stream of SearchHit
+         */
+        public Stream<SearchHit> stream() {
+            return StreamSupport.stream(spliterator(), false).onClose(this::close);
+        }
+
+        @Override
+        public void close() {
+            synchronized (scrollIds) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            CompletableFuture<SearchResponse> current = inflight;
+            if (null != current) {
+                current.cancel(true);
+            }
+            batches.clear();
+            hits = new SearchHit[0];
+            clearScroll();
+        }
+    }
+
+    /**
+     * scroll 迭代器, 由后台线程填充缓冲区
+     */
+    public static class ScrollIterator implements Iterator<SearchHit>, AutoCloseable {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+
+        private volatile boolean closed;
+
+        private volatile boolean failed;
+
+        private Thread producer;
+
+        private Object next;
+
+        ScrollIterator(int bufferSize) {
+            this.queue = new LinkedBlockingQueue<>(bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE);
+        }
+
+        void offer(SearchHit hit) {
+            try {
+                while (!queue.offer(hit, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        throw new CancellationException("scroll iterator closed");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("scroll iterator interrupted");
+            }
+        }
+
+        void finish(long count) {
+            failed = count < 0 && !closed;
+            if (closed || failed) {
+                queue.clear();
+            }
+            try {
+                // 正常结束时 END 排在未读取的 hit 之后
+                while (!queue.offer(END, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        queue.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 是否失败
+         *
+         * @return true if scroll failed
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (null == next) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("scroll iterator interrupted");
+                }
+            }
+            if (END == next) {
+                queue.offer(END);
+                if (failed) {
+                    throw new IllegalStateException("scroll failed");
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public SearchHit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SearchHit hit = (SearchHit) next;
+            next = null;
+            return hit;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            queue.clear();
+            if (null != producer) {
+                producer.interrupt();
+            }
+        }
+    }
+
+}
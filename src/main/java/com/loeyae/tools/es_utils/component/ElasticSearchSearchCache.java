@@ -0,0 +1,501 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.loeyae.tools.es_utils.common.ElasticSearchFingerprint;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * elastic search search cache.
+ *
+ * 按字节数限定容量的 search 结果缓存, 以 {@link ElasticSearchFingerprint#ofRequest(SearchRequest)} 为 key.
+ * 每个 index 维护写入版本号, 写入后该 index 的缓存全部失效; 写入后一个 refresh 周期内不缓存该 index 的结果.
+ * 淘汰采用 TinyLFU 准入 + 采样淘汰: 新结果的访问频率不高于被淘汰者时不准入.
+ * 读取路径无锁, 写入和淘汰串行. 缓存的 SearchResponse 为共享对象, 调用方不可修改, 包括 SearchHit#getSourceAsMap
+ * 返回的 map; 需要修改 source 时通过 {@link ElasticSearchQueryUtils.Result} 读取, 每个 Result 独立解析 source.
+ * 别名按名称处理, 通过别名以外的名称写入时不会失效, 需设置较短的 TTL.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchSearchCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    public static final long DEFAULT_TTL_MILLIS = 60_000L;
+
+    public static final long DEFAULT_REFRESH_MILLIS = 1_000L;
+
+    private static final int SAMPLE_SIZE = 8;
+
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final String ALL = "_all";
+
+    private final long maxBytes;
+
+    private final long defaultTtlMillis;
+
+    private final long refreshNanos;
+
+    private final Map<String, Long> ttlMillis = new ConcurrentHashMap<>();
+
+    private final Map<String, IndexState> indexStates = new ConcurrentHashMap<>();
+
+    /**
+     * 任意 index 写入都会变更, 通配符和 _all 查询依赖此版本
+     */
+    private final IndexState anyState = new IndexState();
+
+    private final Map<ElasticSearchFingerprint, Entry> entries = new ConcurrentHashMap<>();
+
+    private final List<Entry> slots = new ArrayList<>();
+
+    private final FrequencySketch sketch;
+
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    public ElasticSearchSearchCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_TTL_MILLIS, DEFAULT_REFRESH_MILLIS);
+    }
+
+    /**
+     * 构造
+     *
+     * @param maxBytes         max bytes of cached responses
+     * @param defaultTtlMillis ttl of index without setting, &lt;= 0 for no caching
+     * @param refreshMillis    no caching of index within this time after a write
+     */
+    public ElasticSearchSearchCache(long maxBytes, long defaultTtlMillis, long refreshMillis) {
+        if (maxBytes < 1 || refreshMillis < 0) {
+            throw new IllegalArgumentException("maxBytes must be >= 1 and refreshMillis must be >= 0");
+        }
+        this.maxBytes = maxBytes;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / 1024)));
+    }
+
+    /**
+     * 设置 index 的 TTL
+     *
+     * @param index     index name
+     * @param ttlMillis ttl millis, &lt;= 0 for no caching
+     */
+    public void setTtl(String index, long ttlMillis) {
+        this.ttlMillis.put(index, ttlMillis);
+    }
+
+    /**
+     * 解析 index TTL 配置
+     *
+     * @param setting setting of "index:seconds,index:seconds"
+     */
+    public void setTtl(String setting) {
+        if (null == setting || setting.trim().isEmpty()) {
+            return;
+        }
+        for (String item : setting.split(",")) {
+            int separator = item.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("malformed cache ttl [" + item + "]");
+            }
+            setTtl(item.substring(0, separator).trim(),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(item.substring(separator + 1).trim())));
+        }
+    }
+
+    /**
+     * 执行, 命中缓存时直接返回
+     *
+     * @param searchRequest instance of SearchRequest
+     * @param call          call of request
+     * @return instance of SearchResponse
+     */
+    public SearchResponse execute(SearchRequest searchRequest, Supplier<SearchResponse> call) {
+        if (null != searchRequest.scroll() || Boolean.FALSE.equals(searchRequest.requestCache())) {
+            return call.get();
+        }
+        ElasticSearchFingerprint key = ElasticSearchFingerprint.ofRequest(searchRequest);
+        sketch.increment(key);
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (null != entry && entry.isValid(now)) {
+            entry.accessed = now;
+            hits.incrementAndGet();
+            return entry.searchResponse;
+        }
+        misses.incrementAndGet();
+        IndexState[] states = states(searchRequest.indices());
+        long[] generations = new long[states.length];
+        for (int i = 0; i < states.length; i++) {
+            generations[i] = states[i].generation.get();
+        }
+        SearchResponse searchResponse = call.get();
+        if (null != searchResponse) {
+            put(key, searchRequest.indices(), states, generations, searchResponse);
+        }
+        return searchResponse;
+    }
+
+    /**
+     * 写入后失效 index 的缓存
+     *
+     * @param indices index names
+     */
+    public void invalidate(String... indices) {
+        long now = System.nanoTime();
+        if (null != indices) {
+            for (String index : indices) {
+                if (null == index) {
+                    continue;
+                }
+                for (String name : index.split(",")) {
+                    IndexState state = state(name.trim());
+                    state.written = now;
+                    state.generation.incrementAndGet();
+                }
+            }
+        }
+        anyState.written = now;
+        anyState.generation.incrementAndGet();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        slots.clear();
+        bytes = 0;
+    }
+
+    private IndexState[] states(String[] indices) {
+        List<IndexState> states = new ArrayList<>();
+        states.add(anyState);
+        boolean wildcard = null == indices || indices.length == 0;
+        if (null != indices) {
+            for (String index : indices) {
+                for (String name : index.split(",")) {
+                    name = name.trim();
+                    if (name.isEmpty() || ALL.equals(name) || name.contains("*") || name.startsWith("-")) {
+                        wildcard = true;
+                    } else {
+                        states.add(state(name));
+                    }
+                }
+            }
+        }
+        if (!wildcard) {
+            states.remove(0);
+        }
+        return states.toArray(new IndexState[0]);
+    }
+
+    /**
+     * 各 index TTL 的最小值, 未设置的 index 使用默认值
+     */
+    private long ttlNanos(String[] indices) {
+        if (null == indices || indices.length == 0) {
+            return TimeUnit.MILLISECONDS.toNanos(defaultTtlMillis);
+        }
+        long ttl = Long.MAX_VALUE;
+        for (String index : indices) {
+            for (String name : index.split(",")) {
+                ttl = Math.min(ttl, ttlMillis.getOrDefault(name.trim(), defaultTtlMillis));
+            }
+        }
+        return TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    private IndexState state(String name) {
+        IndexState state = indexStates.get(name);
+        return null != state ? state : indexStates.computeIfAbsent(name, key -> new IndexState());
+    }
+
+    private void put(ElasticSearchFingerprint key, String[] indices, IndexState[] states, long[] generations,
+                     SearchResponse searchResponse) {
+        long now = System.nanoTime();
+        long ttl = ttlNanos(indices);
+        if (ttl <= 0) {
+            return;
+        }
+        for (int i = 0; i < states.length; i++) {
+            if (states[i].generation.get() != generations[i] || now - states[i].written < refreshNanos) {
+                return;
+            }
+        }
+        long weight = weigh(searchResponse);
+        if (weight < 0 || weight > maxBytes) {
+            rejections.incrementAndGet();
+            return;
+        }
+        Entry entry = new Entry(key, searchResponse, states, generations, now + ttl, weight, now);
+        synchronized (this) {
+            Entry previous = entries.get(key);
+            if (null != previous) {
+                remove(previous);
+            }
+            int frequency = sketch.frequency(key);
+            while (bytes + weight > maxBytes) {
+                Entry victim = sample(now);
+                if (victim.isValid(now) && frequency <= sketch.frequency(victim.key)) {
+                    rejections.incrementAndGet();
+                    return;
+                }
+                remove(victim);
+                evictions.incrementAndGet();
+            }
+            entry.slot = slots.size();
+            slots.add(entry);
+            entries.put(key, entry);
+            bytes += weight;
+        }
+    }
+
+    /**
+     * 随机采样, 优先返回已失效的条目, 其次为访问频率最低、最久未访问的条目
+     */
+    private Entry sample(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Entry victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            Entry candidate = slots.get(random.nextInt(slots.size()));
+            if (!candidate.isValid(now)) {
+                return candidate;
+            }
+            int frequency = sketch.frequency(candidate.key);
+            if (frequency < victimFrequency || (frequency == victimFrequency
+                    && candidate.accessed - victim.accessed < 0)) {
+                victim = candidate;
+                victimFrequency = frequency;
+            }
+        }
+        return victim;
+    }
+
+    private void remove(Entry entry) {
+        Entry last = slots.remove(slots.size() - 1);
+        if (last != entry) {
+            last.slot = entry.slot;
+            slots.set(entry.slot, last);
+        }
+        entries.remove(entry.key, entry);
+        bytes -= entry.weight;
+    }
+
+    private static long weigh(SearchResponse searchResponse) {
+        CountingOutputStream out = new CountingOutputStream();
+        try (XContentBuilder builder = new XContentBuilder(XContentType.JSON.xContent(), out)) {
+            searchResponse.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+        return out.count + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * 命中数
+     *
+     * @return count of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 未命中数
+     *
+     * @return count of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 淘汰数
+     *
+     * @return count of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * 未准入数
+     *
+     * @return count of rejections
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * 已缓存字节数
+     *
+     * @return bytes of cached responses
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 缓存条目数
+     *
+     * @return count of entries
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static class IndexState {
+
+        private final AtomicLong generation = new AtomicLong();
+
+        private volatile long written = System.nanoTime() - Long.MAX_VALUE / 2;
+    }
+
+    private static class Entry {
+
+        private final ElasticSearchFingerprint key;
+
+        private final SearchResponse searchResponse;
+
+        private final IndexState[] states;
+
+        private final long[] generations;
+
+        private final long expires;
+
+        private final long weight;
+
+        private volatile long accessed;
+
+        private int slot;
+
+        Entry(ElasticSearchFingerprint key, SearchResponse searchResponse, IndexState[] states, long[] generations,
+              long expires, long weight, long accessed) {
+            this.key = key;
+            this.searchResponse = searchResponse;
+            this.states = states;
+            this.generations = generations;
+            this.expires = expires;
+            this.weight = weight;
+            this.accessed = accessed;
+        }
+
+        boolean isValid(long now) {
+            if (now - expires >= 0) {
+                return false;
+            }
+            for (int i = 0; i < states.length; i++) {
+                if (states[i].generation.get() != generations[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 4 行 count-min sketch, 计数上限 15, 累计次数达到 10 倍宽度时减半;
+     * 并发更新不加锁, 允许丢失计数
+     */
+    private static class FrequencySketch {
+
+        private static final int MAX_COUNT = 15;
+
+        private final int[] table;
+
+        private final int mask;
+
+        private final int resetSize;
+
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(width - 1) << 1;
+            this.table = new int[size * 4];
+            this.mask = size - 1;
+            this.resetSize = size * 10;
+        }
+
+        void increment(ElasticSearchFingerprint key) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = index(key, i);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= resetSize) {
+                reset();
+            }
+        }
+
+        int frequency(ElasticSearchFingerprint key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < 4; i++) {
+                frequency = Math.min(frequency, table[index(key, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(ElasticSearchFingerprint key, int row) {
+            long hash = key.getLow() + row * key.getHigh();
+            hash ^= hash >>> 32;
+            return row * (mask + 1) + ((int) hash & mask);
+        }
+
+        private void reset() {
+            additions = 0;
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>>= 1;
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+}
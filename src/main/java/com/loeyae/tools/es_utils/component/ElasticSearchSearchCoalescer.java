@@ -0,0 +1,274 @@
+package com.loeyae.tools.es_utils.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * elastic search search coalescer.
+ *
+ * 窗口期内到达的 search 请求合并为一个 _msearch 请求, 响应按顺序拆分给各调用方;
+ * 达到最大批量时立即发送. scroll 请求不能合并, 由调用方直接发送.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@Slf4j
+public class ElasticSearchSearchCoalescer implements AutoCloseable {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 2L;
+
+    public static final int DEFAULT_MAX_BATCH = 32;
+
+    public static final int[] DEFAULT_HISTOGRAM_BUCKETS = new int[]{1, 2, 4, 8, 16, 32, 64};
+
+    private final RestHighLevelClient restHighLevelClient;
+
+    private final long windowMillis;
+
+    private final int maxBatch;
+
+    private final int[] buckets;
+
+    private final AtomicLongArray histogram;
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile RequestOptions requestOptions = RequestOptions.DEFAULT;
+
+    private List<Pending> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> scheduled;
+
+    private boolean closed;
+
+    public ElasticSearchSearchCoalescer(RestHighLevelClient restHighLevelClient) {
+        this(restHighLevelClient, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH, DEFAULT_HISTOGRAM_BUCKETS);
+    }
+
+    /**
+     * 构造
+     *
+     * @param restHighLevelClient instance of RestHighLevelClient
+     * @param windowMillis        max wait of the first request in a batch
+     * @param maxBatch            max requests of a batch
+     * @param buckets             upper bounds of batch size histogram
+     */
+    public ElasticSearchSearchCoalescer(RestHighLevelClient restHighLevelClient, long windowMillis, int maxBatch,
+                                        int[] buckets) {
+        if (windowMillis < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("windowMillis must be >= 0 and maxBatch must be >= 1");
+        }
+        this.restHighLevelClient = restHighLevelClient;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.buckets = null == buckets ? DEFAULT_HISTOGRAM_BUCKETS.clone() : buckets.clone();
+        Arrays.sort(this.buckets);
+        this.histogram = new AtomicLongArray(this.buckets.length + 1);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "es-utils-search-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交请求, 关闭后直接发送
+     *
+     * @param searchRequest instance of SearchRequest, without scroll
+     * @return CompletableFuture of SearchResponse
+     */
+    public CompletableFuture<SearchResponse> submit(SearchRequest searchRequest) {
+        if (null != searchRequest.scroll()) {
+            throw new IllegalArgumentException("scroll request can not be coalesced");
+        }
+        Pending item = new Pending(searchRequest);
+        List<Pending> full = null;
+        synchronized (this) {
+            if (closed) {
+                full = Collections.singletonList(item);
+            } else {
+                pending.add(item);
+                if (pending.size() >= maxBatch) {
+                    full = drain();
+                } else if (pending.size() == 1) {
+                    scheduled = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (null != full) {
+            send(full);
+        }
+        return item.future;
+    }
+
+    /**
+     * 立即发送当前批次
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private List<Pending> drain() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (null != scheduled) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        return batch;
+    }
+
+    private void send(List<Pending> batch) {
+        batches.incrementAndGet();
+        requests.addAndGet(batch.size());
+        record(batch.size());
+        if (batch.size() == 1) {
+            Pending item = batch.get(0);
+            restHighLevelClient.searchAsync(item.searchRequest, requestOptions,
+                    new ActionListener<SearchResponse>() {
+                        @Override
+                        public void onResponse(SearchResponse searchResponse) {
+                            item.future.complete(searchResponse);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            item.future.completeExceptionally(e);
+                        }
+                    });
+            return;
+        }
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        batch.forEach(item -> multiSearchRequest.add(item.searchRequest));
+        restHighLevelClient.msearchAsync(multiSearchRequest, requestOptions,
+                new ActionListener<MultiSearchResponse>() {
+                    @Override
+                    public void onResponse(MultiSearchResponse multiSearchResponse) {
+                        MultiSearchResponse.Item[] items = multiSearchResponse.getResponses();
+                        for (int i = 0; i < batch.size(); i++) {
+                            CompletableFuture<SearchResponse> future = batch.get(i).future;
+                            if (i >= items.length) {
+                                future.completeExceptionally(new IllegalStateException(
+                                        "missing response of msearch item " + i));
+                            } else if (items[i].isFailure()) {
+                                future.completeExceptionally(items[i].getFailure());
+                            } else {
+                                future.complete(items[i].getResponse());
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        batch.forEach(item -> item.future.completeExceptionally(e));
+                    }
+                });
+    }
+
+    private void record(int size) {
+        int index = Arrays.binarySearch(buckets, size);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        histogram.incrementAndGet(index);
+    }
+
+    /**
+     * 批量大小直方图, key 为桶上限, 超过最大桶的计入 Integer.MAX_VALUE
+     *
+     * @return Map of bucket and count
+     */
+    public Map<Integer, Long> getBatchSizeHistogram() {
+        Map<Integer, Long> result = new LinkedHashMap<>(buckets.length + 1);
+        for (int i = 0; i < buckets.length; i++) {
+            result.put(buckets[i], histogram.get(i));
+        }
+        result.put(Integer.MAX_VALUE, histogram.get(buckets.length));
+        return result;
+    }
+
+    /**
+     * 已发送批次数
+     *
+     * @return count of batches
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * 已发送请求数
+     *
+     * @return count of requests
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    /**
+     * 设置请求的 RequestOptions
+     *
+     * @param requestOptions instance of RequestOptions
+     */
+    public void setRequestOptions(RequestOptions requestOptions) {
+        this.requestOptions = requestOptions;
+    }
+
+    /**
+     * 发送当前批次并停止合并, 之后提交的请求直接发送
+     */
+    @Override
+    public void close() {
+        List<Pending> batch;
+        synchronized (this) {
+            closed = true;
+            batch = drain();
+        }
+        scheduler.shutdown();
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private static class Pending {
+
+        private final SearchRequest searchRequest;
+
+        private final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+
+        Pending(SearchRequest searchRequest) {
+            this.searchRequest = searchRequest;
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.loeyae.tools.es_utils.common.ElasticSearchFingerprint;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * elastic search single flight.
+ *
+ * 指纹相同的并发请求只执行一次, 其余调用方等待并共享同一结果(或异常);
+ * 请求完成后立即移除, 不缓存结果. 共享的 SearchResponse 调用方不可修改, 包括 SearchHit#getSourceAsMap 返回的 map;
+ * 需要修改 source 时通过 {@link ElasticSearchQueryUtils.Result} 读取, 每个 Result 独立解析 source.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+public class ElasticSearchSingleFlight {
+
+    private final Map<ElasticSearchFingerprint, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * 执行, 相同 key 的请求执行中时等待其结果
+     *
+     * @param key  fingerprint of request
+     * @param call call of request
+     * @param <T>  type of result
+     * @return result of call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(ElasticSearchFingerprint key, Supplier<T> call) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inflight.putIfAbsent(key, future);
+        if (null != existing) {
+            suppressed.incrementAndGet();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        executed.incrementAndGet();
+        try {
+            T result = call.get();
+            inflight.remove(key, future);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inflight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 实际执行的请求数
+     *
+     * @return count of executed
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * 被合并的重复请求数
+     *
+     * @return count of suppressed duplicates
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * 执行中的请求数
+     *
+     * @return count of in-flight requests
+     */
+    public int getInflight() {
+        return inflight.size();
+    }
+
+}
@@ -1,5 +1,8 @@
 package com.loeyae.tools.es_utils.config;
 
+import com.loeyae.tools.es_utils.common.ElasticSearchCompression;
+import com.loeyae.tools.es_utils.common.ElasticSearchFilterPath;
+import com.loeyae.tools.es_utils.common.ElasticSearchRequestCancellation;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
@@ -34,6 +37,32 @@ public class ElasticsearchRestClient {
     @Value("${elasticsearch.cluster-nodes}")
     String[] ipAddress;
 
+    /**
+     * 压缩 bulk 请求体; 接受 gzip 响应时服务端需要开启 http.compression
+     */
+    @Value("${elasticsearch.compression.enabled:false}")
+    boolean compressionEnabled;
+
+    @Value("${elasticsearch.compression.min-bytes:1024}")
+    int compressionMinBytes;
+
+    @Value("${elasticsearch.compression.level:1}")
+    int compressionLevel;
+
+    @Value("${elasticsearch.compression.accept-gzip:${elasticsearch.compression.enabled:false}}")
+    boolean compressionAcceptGzip;
+
+    /**
+     * bulk 请求和 search/bulk 响应的 gzip 压缩, 可读取压缩率和耗时
+     *
+     * @return instance of ElasticSearchCompression
+     */
+    @Bean
+    public ElasticSearchCompression elasticSearchCompression() {
+        return new ElasticSearchCompression(compressionEnabled, compressionMinBytes, compressionLevel,
+                compressionAcceptGzip);
+    }
+
     /**
      * RestClientBuilder
      *
@@ -46,7 +75,9 @@ public class ElasticsearchRestClient {
                 .filter(Objects::nonNull)
                 .toArray(HttpHost[]::new);
         log.debug("hosts:{}", Arrays.toString(hosts));
-        return RestClient.builder(hosts);
+        return RestClient.builder(hosts).setHttpClientConfigCallback(httpClientBuilder ->
+                httpClientBuilder.addInterceptorLast(ElasticSearchRequestCancellation.INTERCEPTOR)
+                        .addInterceptorLast(ElasticSearchFilterPath.INTERCEPTOR));
     }
 
     /**
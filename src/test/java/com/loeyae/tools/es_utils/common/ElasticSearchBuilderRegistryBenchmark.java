@@ -0,0 +1,57 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearchBuilderRegistry Benchmark.
+ *
+ * 冷启动耗时: 加载构建时生成的注册表(generated)与 Reflections 扫描(scan)的对比,
+ * 每次测量使用新的 JVM, 需先执行 mvn process-classes 生成注册表.
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ElasticSearchBuilderRegistryBenchmark {
+
+    @Benchmark
+    public Map<String, String> scan() {
+        Map<String, String> registry = ElasticSearchBuilderRegistry.scanQueryBuilders();
+        registry.putAll(ElasticSearchBuilderRegistry.scanAggregationBuilders());
+        return registry;
+    }
+
+    @Benchmark
+    public Map<String, String> generated() {
+        Map<String, String> registry = ElasticSearchBuilderRegistry.load(
+                ElasticSearchBuilderRegistry.QUERY_BUILDER_RESOURCE);
+        registry.putAll(ElasticSearchBuilderRegistry.load(
+                ElasticSearchBuilderRegistry.AGGREGATION_BUILDER_RESOURCE));
+        return registry;
+    }
+
+    @Benchmark
+    public Object queryBuilderInit() {
+        return ElasticSearchQueryBuilder.namedXContentRegistry;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ElasticSearchBuilderRegistryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
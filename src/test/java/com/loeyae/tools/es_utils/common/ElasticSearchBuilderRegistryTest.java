@@ -0,0 +1,60 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchBuilderRegistryTest {
+
+    @Test
+    void testScan() {
+        Map<String, String> queryBuilders = ElasticSearchBuilderRegistry.scanQueryBuilders();
+        assertEquals(TermQueryBuilder.class.getName(), queryBuilders.get(TermQueryBuilder.NAME));
+        Map<String, String> aggregationBuilders = ElasticSearchBuilderRegistry.scanAggregationBuilders();
+        assertEquals(MaxAggregationBuilder.class.getName(), aggregationBuilders.get(MaxAggregationBuilder.NAME));
+        assertEquals(queryBuilders, ElasticSearchBuilderRegistry.queryBuilders());
+        assertEquals(aggregationBuilders, ElasticSearchBuilderRegistry.aggregationBuilders());
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        Path dir = Files.createTempDirectory("es_utils");
+        Map<String, String> queryBuilders = ElasticSearchBuilderRegistry.scanQueryBuilders();
+        Path path = dir.resolve(ElasticSearchBuilderRegistry.QUERY_BUILDER_RESOURCE);
+        ElasticSearchBuilderRegistry.write(path, queryBuilders);
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        assertEquals(queryBuilders, ElasticSearchBuilderRegistry.read(properties));
+        properties.setProperty(ElasticSearchBuilderRegistry.VERSION_KEY, "0.0.0");
+        assertNull(ElasticSearchBuilderRegistry.read(properties));
+    }
+
+    @Test
+    void testBind() {
+        ElasticSearchBuilderRegistry.scanQueryBuilders().forEach((name, className) ->
+                assertNotNull(ElasticSearchBuilderRegistry.bind(className,
+                        ElasticSearchBuilderRegistry.QUERY_PARSE_METHOD_NAME,
+                        ElasticSearchBuilderRegistry.QueryParser.class), name));
+        assertNotNull(ElasticSearchBuilderRegistry.bind(MaxAggregationBuilder.class.getName(),
+                ElasticSearchBuilderRegistry.AGGREGATION_PARSE_METHOD_NAME,
+                ElasticSearchBuilderRegistry.AggregationParser.class));
+        assertNotNull(ElasticSearchAggregationBuilder.aggregationParser(PercentilesAggregationBuilder.NAME));
+        assertSame(ElasticSearchAggregationBuilder.aggregationParser(PercentilesAggregationBuilder.NAME),
+                ElasticSearchAggregationBuilder.aggregationParser(PercentilesAggregationBuilder.NAME));
+        assertNull(ElasticSearchAggregationBuilder.aggregationParser("unknown"));
+        assertNull(ElasticSearchBuilderRegistry.bind(TermQueryBuilder.class.getName(), "unknown",
+                ElasticSearchBuilderRegistry.QueryParser.class));
+    }
+}
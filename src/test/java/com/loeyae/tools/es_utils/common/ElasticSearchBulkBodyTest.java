@@ -0,0 +1,94 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchBulkBodyTest {
+
+    @Test
+    void testRequest() throws IOException {
+        String json = "{\"value\" : 1,  \"tags\":[ \"a\" ]}";
+        BulkRequest bulkRequest = new BulkRequest()
+                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL)
+                .timeout("30s");
+        bulkRequest.add(new IndexRequest("zy-sample", "_doc", "1").source(json, XContentType.JSON).routing("r1"));
+        bulkRequest.add(new UpdateRequest("zy-sample", "_doc", "2").doc(Collections.singletonMap("value", 2))
+                .docAsUpsert(true).retryOnConflict(3));
+        bulkRequest.add(new DeleteRequest("zy-sample", "_doc", "3").version(5));
+        Request request = ElasticSearchBulkBody.request(bulkRequest, RequestOptions.DEFAULT);
+        assertEquals("/_bulk", request.getEndpoint());
+        assertEquals("wait_for", request.getParameters().get("refresh"));
+        assertEquals("30s", request.getParameters().get("timeout"));
+        assertEquals("application/json", request.getEntity().getContentType().getValue());
+        String[] lines = EntityUtils.toString(request.getEntity(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("{\"index\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\",\"_id\":\"1\",\"routing\":\"r1\"}}",
+                lines[0]);
+        assertEquals(json, lines[1]);
+        assertEquals("{\"update\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\",\"_id\":\"2\"," +
+                "\"retry_on_conflict\":3}}", lines[2]);
+        assertEquals("{\"doc_as_upsert\":true,\"doc\":{\"value\":2}}", lines[3]);
+        assertEquals("{\"delete\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\",\"_id\":\"3\",\"version\":5}}",
+                lines[4]);
+    }
+
+    @Test
+    void testContentType() throws IOException {
+        BytesReference cbor = BytesReference.bytes(XContentFactory.cborBuilder().startObject()
+                .field("value", 1).endObject());
+        BytesReference smile = BytesReference.bytes(XContentFactory.smileBuilder().startObject()
+                .field("value", 2).endObject());
+        IndexRequest indexRequest = new IndexRequest("zy-sample", "_doc").source(cbor, XContentType.CBOR);
+        assertEquals(XContentType.SMILE, ElasticSearchBulkBody.bulkContentType(indexRequest));
+        assertEquals(XContentType.CBOR, indexRequest.getContentType());
+        assertSame(cbor, indexRequest.source());
+        assertEquals(XContentType.SMILE, ElasticSearchBulkBody.normalizeSource(indexRequest));
+        assertEquals(XContentType.SMILE, indexRequest.getContentType());
+        assertEquals(1, XContentHelper.convertToMap(indexRequest.source(), false, XContentType.SMILE).v2()
+                .get("value"));
+        assertNull(ElasticSearchBulkBody.bulkContentType(new DeleteRequest("zy-sample", "_doc", "1")));
+        assertNull(ElasticSearchBulkBody.normalizeSource(new DeleteRequest("zy-sample", "_doc", "1")));
+
+        BulkRequest bulkRequest = new BulkRequest();
+        bulkRequest.add(new IndexRequest("zy-sample", "_doc", "1").source(smile, XContentType.SMILE));
+        bulkRequest.add(new IndexRequest("zy-sample", "_doc", "2").source("{\"value\":3}", XContentType.JSON));
+        HttpEntity entity = ElasticSearchBulkBody.entity(bulkRequest);
+        assertEquals("application/smile", entity.getContentType().getValue());
+        byte[] body = EntityUtils.toByteArray(entity);
+        int sources = 0;
+        int from = 0;
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] == (byte) 0xff) {
+                Map<String, Object> chunk = XContentHelper.convertToMap(new BytesArray(body, from, i - from), false,
+                        XContentType.SMILE).v2();
+                if (chunk.containsKey("value")) {
+                    sources++;
+                    assertEquals(sources == 1 ? 2 : 3, chunk.get("value"));
+                }
+                from = i + 1;
+            }
+        }
+        assertEquals(2, sources);
+    }
+
+}
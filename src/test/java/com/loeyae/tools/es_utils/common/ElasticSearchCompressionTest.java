@@ -0,0 +1,179 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.loeyae.tools.es_utils.component.ElasticSearchQueryUtils;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.*;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchCompressionTest {
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private RestHighLevelClient client;
+
+    private final AtomicReference<String> requestEncoding = new AtomicReference<>();
+
+    private final AtomicReference<String> acceptEncoding = new AtomicReference<>();
+
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+    private final AtomicReference<String> responseBody = new AtomicReference<>();
+
+    private ElasticSearchCompression start(ElasticSearchCompression compression) throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            requestEncoding.set(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(requestEncoding.get())) {
+                in = new GZIPInputStream(in);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Streams.copy(in, body);
+            requestBody.set(new String(body.toByteArray(), StandardCharsets.UTF_8));
+            byte[] bytes = responseBody.get().getBytes(StandardCharsets.UTF_8);
+            if (null != acceptEncoding.get() && acceptEncoding.get().contains("gzip")) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(bytes);
+                }
+                bytes = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        client = new RestHighLevelClient(RestClient.builder(
+                new HttpHost("localhost", server.getAddress().getPort())));
+        return compression;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void testCompression() throws IOException {
+        ElasticSearchCompression compression = start(new ElasticSearchCompression(true, 1024, 1, true));
+        BulkRequest bulkRequest = new BulkRequest();
+        for (int i = 0; i < 50; i++) {
+            bulkRequest.add(new IndexRequest("zy-sample", "_doc", String.valueOf(i))
+                    .source("{\"message\":\"compressible message\"}", XContentType.JSON));
+        }
+        String body = EntityUtils.toString(ElasticSearchBulkBody.entity(bulkRequest));
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            items.append(i == 0 ? "" : ",").append("{\"index\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\",")
+                    .append("\"_id\":\"").append(i).append("\",\"_version\":1,\"result\":\"created\",")
+                    .append("\"status\":201}}");
+        }
+        String bulkResponse = "{\"took\":3,\"errors\":false,\"items\":[" + items + "]}";
+        responseBody.set(bulkResponse);
+        BulkResponse response = ElasticSearchBulkBody.bulk(client.getLowLevelClient(), bulkRequest,
+                RequestOptions.DEFAULT, compression);
+        assertEquals("gzip", requestEncoding.get());
+        assertEquals("gzip", acceptEncoding.get());
+        assertEquals(body, requestBody.get());
+        assertEquals(50, response.getItems().length);
+        assertFalse(response.hasFailures());
+        assertEquals(1, compression.getRequests());
+        assertEquals(body.length(), compression.getRequestBytes());
+        assertTrue(compression.getRequestRatio() < 0.2);
+        assertTrue(compression.getCompressNanos() > 0);
+        assertEquals(1, compression.getResponses());
+        assertEquals(bulkResponse.length(), compression.getResponseBytes());
+        assertTrue(compression.getResponseRatio() < 0.2);
+        assertTrue(compression.getDecompressNanos() > 0);
+
+        bulkRequest = new BulkRequest().add(new IndexRequest("zy-sample", "_doc", "0")
+                .source("{\"small\":true}", XContentType.JSON));
+        responseBody.set("{\"took\":1,\"errors\":false,\"items\":[]}");
+        ElasticSearchBulkBody.bulk(client.getLowLevelClient(), bulkRequest, RequestOptions.DEFAULT, compression);
+        assertNull(requestEncoding.get());
+        assertTrue(requestBody.get().endsWith("{\"small\":true}\n"));
+        assertEquals(1, compression.getRequests());
+
+        responseBody.set("{\"_shards\":{\"total\":1},\"hits\":{\"total\":1,\"hits\":[{\"_id\":\"1\","
+                + "\"_source\":{\"message\":\"" + repeat("x", 2048) + "\"}}]}}");
+        ElasticSearchQueryUtils.Result result = ElasticSearchQueryUtils.result(
+                client.search(new SearchRequest("zy-sample"), compression.options(RequestOptions.DEFAULT)));
+        assertEquals(1, result.getTotal());
+        assertEquals(2048, ((String) result.sourceAt(0).get("message")).length());
+        assertEquals(3, compression.getResponses());
+    }
+
+    @Test
+    void testDisabled() throws IOException {
+        ElasticSearchCompression compression = start(new ElasticSearchCompression(false, 0, 6, false));
+        HttpEntity entity = new NStringEntity(repeat("{}", 1000), ContentType.APPLICATION_JSON);
+        assertSame(entity, compression.compress(entity));
+        assertSame(RequestOptions.DEFAULT, compression.options(RequestOptions.DEFAULT));
+        responseBody.set(repeat("{}", 100));
+        Request request = new Request("POST", "/_echo");
+        request.setEntity(entity);
+        client.getLowLevelClient().performRequest(request);
+        assertNull(requestEncoding.get());
+        assertNull(acceptEncoding.get());
+        assertEquals(0, compression.getRequests());
+        assertEquals(0, compression.getResponses());
+        assertEquals(1.0, compression.getRequestRatio());
+
+        compression = new ElasticSearchCompression(true, 0, 9, true);
+        entity = new NStringEntity("{}", ContentType.APPLICATION_JSON);
+        assertSame(entity, compression.compress(entity));
+        request = new Request("GET", "/_echo");
+        request.setOptions(compression.options(RequestOptions.DEFAULT));
+        Response response = client.getLowLevelClient().performRequest(request);
+        assertEquals("gzip", acceptEncoding.get());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(repeat("{}", 100), EntityUtils.toString(response.getEntity()));
+        assertEquals(1, compression.getResponses());
+        assertThrows(IllegalArgumentException.class, () -> new ElasticSearchCompression(true, 0, 10, true));
+    }
+
+}
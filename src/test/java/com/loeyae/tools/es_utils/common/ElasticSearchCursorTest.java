@@ -0,0 +1,33 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchCursorTest {
+
+    @Test
+    void testEncodeAndDecode() {
+        Object[] sortValues = new Object[]{1571270400000L, 2.5, "doc#1", null, true};
+        String cursor = ElasticSearchCursor.encode(sortValues);
+        assertNotNull(cursor);
+        assertFalse(cursor.contains("="));
+        Object[] decoded = ElasticSearchCursor.decode(cursor);
+        assertEquals(1571270400000L, ((Number) decoded[0]).longValue());
+        assertEquals(2.5, decoded[1]);
+        assertEquals("doc#1", decoded[2]);
+        assertNull(decoded[3]);
+        assertEquals(true, decoded[4]);
+        assertNull(ElasticSearchCursor.encode(new Object[0]));
+        assertNull(ElasticSearchCursor.encode(null));
+    }
+
+    @Test
+    void testDecodeMalformed() {
+        assertThrows(IllegalArgumentException.class, () -> ElasticSearchCursor.decode("!!"));
+        assertThrows(IllegalArgumentException.class, () -> ElasticSearchCursor.decode(
+                ElasticSearchCursor.encode(new Object[]{"a"}).substring(1)));
+        assertThrows(IllegalArgumentException.class, () -> ElasticSearchCursor.decode("W10"));
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.loeyae.tools.es_utils.component.ElasticSearchQueryUtils;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchFilterPathTest {
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private RestHighLevelClient client;
+
+    private final AtomicReference<String> query = new AtomicReference<>();
+
+    private final AtomicReference<String> header = new AtomicReference<>();
+
+    private final AtomicReference<String> body = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            query.set(null == rawQuery ? null : URLDecoder.decode(rawQuery, "UTF-8"));
+            header.set(exchange.getRequestHeaders().getFirst(ElasticSearchFilterPath.HEADER_NAME));
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        client = new RestHighLevelClient(RestClient.builder(
+                new HttpHost("localhost", server.getAddress().getPort()))
+                .setHttpClientConfigCallback(builder ->
+                        builder.addInterceptorLast(ElasticSearchFilterPath.INTERCEPTOR)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSearch() throws IOException {
+        body.set("{\"_shards\":{\"total\":1},\"hits\":{\"total\":3,\"hits\":[{\"_id\":\"1\",\"_source\":{\"id\":1}},"
+                + "{\"_id\":\"2\",\"_source\":{\"id\":2}}]}}");
+        RequestOptions options = ElasticSearchFilterPath.options(RequestOptions.DEFAULT,
+                ElasticSearchFilterPath.SEARCH);
+        SearchResponse searchResponse = client.search(new SearchRequest("zy-sample"), options);
+        assertNull(header.get());
+        assertTrue(query.get().contains("filter_path=" + String.join(",", ElasticSearchFilterPath.SEARCH)));
+        assertTrue(query.get().contains("typed_keys=true"));
+        ElasticSearchQueryUtils.Result result = ElasticSearchQueryUtils.result(searchResponse);
+        assertEquals(3, result.getTotal());
+        assertEquals(2, result.getCount());
+        assertEquals(2, result.sourceAt(1).get("id"));
+        assertNull(result.getAggregations());
+
+        body.set("{\"_shards\":{\"total\":1}}");
+        searchResponse = client.search(new SearchRequest("zy-sample"),
+                ElasticSearchFilterPath.options(RequestOptions.DEFAULT, "aggregations"));
+        assertTrue(query.get().contains("filter_path=aggregations,_shards.total"));
+        result = ElasticSearchQueryUtils.result(searchResponse);
+        assertEquals(0, result.getTotal());
+        assertEquals(0, result.getCount());
+        assertTrue(result.getSource().isEmpty());
+        assertNull(result.getCursor());
+
+        client.search(new SearchRequest("zy-sample"), ElasticSearchFilterPath.options(RequestOptions.DEFAULT));
+        assertFalse(query.get().contains("filter_path"));
+    }
+
+    @Test
+    void testMultiSearch() throws IOException {
+        body.set("{\"responses\":[{\"_shards\":{\"total\":1},\"hits\":{\"total\":1,\"hits\":[{\"_id\":\"1\","
+                + "\"_source\":{\"id\":1}}]}},{\"_shards\":{\"total\":1},\"hits\":{\"total\":0}}]}");
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        multiSearchRequest.add(new SearchRequest("zy-sample"));
+        multiSearchRequest.add(new SearchRequest("zy-sample"));
+        MultiSearchResponse multiSearchResponse = client.msearch(multiSearchRequest,
+                ElasticSearchFilterPath.options(RequestOptions.DEFAULT, "hits.total", "hits.hits._source"));
+        assertTrue(query.get().contains(
+                "filter_path=responses.hits.total,responses.hits.hits._source,responses._shards.total"));
+        assertEquals(1, multiSearchResponse.getResponses()[0].getResponse().getHits().getTotalHits());
+        assertEquals(0, multiSearchResponse.getResponses()[1].getResponse().getHits().getHits().length);
+    }
+
+    @Test
+    void testRewrite() {
+        assertEquals(URI.create("/zy-sample/_search?typed_keys=true&filter_path=hits.total"),
+                ElasticSearchFilterPath.rewrite(URI.create("/zy-sample/_search?typed_keys=true"), "hits.total"));
+        assertEquals(URI.create("/_search/scroll?filter_path=_scroll_id"),
+                ElasticSearchFilterPath.rewrite(URI.create("/_search/scroll?filter_path=took"), "_scroll_id"));
+    }
+
+}
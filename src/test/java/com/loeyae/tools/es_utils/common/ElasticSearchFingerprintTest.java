@@ -0,0 +1,54 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchFingerprintTest {
+
+    @Test
+    void testOf() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList(1, 10));
+        map.put("c", Collections.singletonMap("gte", 2.5));
+        Map<String, Object> map1 = new LinkedHashMap<>();
+        map1.put("c", Collections.singletonMap("gte", 2.5));
+        map1.put("b", Arrays.asList(1, 10));
+        map1.put("a", 1L);
+        ElasticSearchFingerprint fingerprint = ElasticSearchFingerprint.of(map);
+        assertEquals(fingerprint, ElasticSearchFingerprint.of(map1));
+        assertEquals(fingerprint.hashCode(), ElasticSearchFingerprint.of(map1).hashCode());
+        assertEquals(32, fingerprint.toString().length());
+        assertEquals(fingerprint, ElasticSearchFingerprint.of("{\"c\":{\"gte\":2.5},\"a\":1,\"b\":[1,10]}"));
+        map1.put("b", new Object[]{1, 10});
+        assertNotEquals(fingerprint, ElasticSearchFingerprint.of(map1));
+        map1.put("b", Arrays.asList(10, 1));
+        assertNotEquals(fingerprint, ElasticSearchFingerprint.of(map1));
+        map1.put("b", Arrays.asList(1, 10));
+        map1.put("a", "1");
+        assertNotEquals(fingerprint, ElasticSearchFingerprint.of(map1));
+        assertNotEquals(ElasticSearchFingerprint.of(Collections.singletonMap("a", "b")),
+                ElasticSearchFingerprint.of(Collections.singletonMap("b", "a")));
+        assertNotEquals(ElasticSearchFingerprint.of(null), ElasticSearchFingerprint.of(Collections.emptyMap()));
+    }
+
+    @Test
+    void testOfBuilder() {
+        ElasticSearchFingerprint fingerprint = ElasticSearchFingerprint.of(QueryBuilders.boolQuery()
+                .must(QueryBuilders.termQuery("a", 1)).filter(QueryBuilders.rangeQuery("b").gte(1)));
+        assertEquals(fingerprint, ElasticSearchFingerprint.of(QueryBuilders.boolQuery()
+                .must(QueryBuilders.termQuery("a", 1)).filter(QueryBuilders.rangeQuery("b").gte(1))));
+        assertNotEquals(fingerprint, ElasticSearchFingerprint.of(QueryBuilders.boolQuery()
+                .must(QueryBuilders.termQuery("a", 2)).filter(QueryBuilders.rangeQuery("b").gte(1))));
+        List<Object> aggregations = new ArrayList<>(ElasticSearchAggregationBuilder.build(
+                Collections.singletonMap("max", "price")));
+        assertEquals(ElasticSearchFingerprint.of(aggregations), ElasticSearchFingerprint.of(
+                ElasticSearchAggregationBuilder.build(Collections.singletonMap("max", "price"))));
+        assertNotEquals(ElasticSearchFingerprint.of(aggregations), ElasticSearchFingerprint.of(
+                ElasticSearchAggregationBuilder.build(Collections.singletonMap("min", "price"))));
+    }
+}
@@ -0,0 +1,95 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearchQueryBuilder Benchmark.
+ *
+ * JSON 往返解析(legacy)与直接构造(direct)、查询模板(template)的对比,
+ * 运行: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.loeyae.tools.es_utils.common.ElasticSearchQueryBuilderBenchmark
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchQueryBuilderBenchmark {
+
+    private Map<String, Object> query;
+
+    private Map<String, Object> joinQuery;
+
+    @Setup
+    public void setUp() {
+        query = new LinkedHashMap<>();
+        query.put("status", 1);
+        query.put("category", new Object[]{"a", "b", "c"});
+        query.put("price", Arrays.asList(10, 100));
+        query.put("created", new LinkedHashMap<String, Object>(){{
+            put("gte", "2020-01-01");
+            put("format", "yyyy-MM-dd");
+        }});
+        query.put(TermQueryBuilder.NAME, Collections.singletonMap("name", "test"));
+        joinQuery = new LinkedHashMap<>();
+        joinQuery.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST, Arrays.asList(
+                Collections.singletonMap("status", 1),
+                Collections.singletonMap("category", new Object[]{"a", "b"})));
+        joinQuery.put(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD, Collections.singletonMap("price",
+                Arrays.asList(10, 100)));
+    }
+
+    @Benchmark
+    public QueryBuilder legacyBool() {
+        return ElasticSearchQueryBuilder.parseQueryBuilder(Collections.singletonMap(BoolQueryBuilder.NAME,
+                ElasticSearchQueryBuilder.computedBoolQuery(query)));
+    }
+
+    @Benchmark
+    public QueryBuilder directBool() {
+        return ElasticSearchQueryBuilder.boolQueryBuilder(query);
+    }
+
+    @Benchmark
+    public QueryBuilder templateBool() {
+        return ElasticSearchQueryTemplate.build(query);
+    }
+
+    @Benchmark
+    public QueryBuilder legacyJoin() {
+        return ElasticSearchQueryBuilder.parseQueryBuilder(Collections.singletonMap(BoolQueryBuilder.NAME,
+                ElasticSearchQueryBuilder.filterBoolQuery(joinQuery)));
+    }
+
+    @Benchmark
+    public QueryBuilder directJoin() {
+        return ElasticSearchQueryBuilder.boolQueryBuilder(joinQuery);
+    }
+
+    @Benchmark
+    public QueryBuilder templateJoin() {
+        return ElasticSearchQueryTemplate.build(joinQuery);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ElasticSearchQueryBuilderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
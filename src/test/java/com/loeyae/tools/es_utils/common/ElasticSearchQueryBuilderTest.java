@@ -7,13 +7,9 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class ElasticSearchQueryBuilderTest {
 
@@ -118,4 +114,40 @@ class ElasticSearchQueryBuilderTest {
         params2.put(TermQueryBuilder.NAME, "test");
         assertTrue(ElasticSearchQueryBuilder.containsJoinKey(params2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDirectQuery() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", new Object[]{"x", 2});
+        map.put("c", Arrays.asList("2020-01-01", null));
+        map.put("d", Collections.singletonList(5));
+        map.put("e", new LinkedHashMap<String, Object>(){{
+            put("gt", 1);
+            put("lt", 9.5);
+            put("boost", 2);
+            put("_name", "e");
+        }});
+        map.forEach((key, value) -> {
+            Map<String, Object> query = Collections.singletonMap(key, value);
+            assertEquals(ElasticSearchQueryBuilder.parseQueryBuilder(query),
+                    ElasticSearchQueryBuilder.queryBuilder(query));
+        });
+        Map<String, Object> query = Collections.singletonMap(TermQueryBuilder.NAME,
+                Collections.singletonMap("name", "test"));
+        assertEquals(ElasticSearchQueryBuilder.parseQueryBuilder(query),
+                ElasticSearchQueryBuilder.queryBuilder(query));
+        Map<String, Object> boolQuery = Collections.singletonMap(BoolQueryBuilder.NAME,
+                ElasticSearchQueryBuilder.computedBoolQuery(map));
+        assertEquals(ElasticSearchQueryBuilder.parseQueryBuilder(boolQuery),
+                ElasticSearchQueryBuilder.boolQueryBuilder(map));
+        Map<String, Object> joinQuery = new HashMap<>();
+        joinQuery.put(ElasticSearchQueryBuilder.JOIN_TYPE_FILTER, Arrays.asList(map,
+                Collections.singletonList(Collections.singletonMap("f", "g"))));
+        joinQuery.put(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD, Collections.singletonMap("h", 1));
+        Map<String, Object> boolQuery1 = Collections.singletonMap(BoolQueryBuilder.NAME,
+                ElasticSearchQueryBuilder.filterBoolQuery(joinQuery));
+        assertEquals(ElasticSearchQueryBuilder.parseQueryBuilder(boolQuery1),
+                ElasticSearchQueryBuilder.boolQueryBuilder(joinQuery));
+    }
+}
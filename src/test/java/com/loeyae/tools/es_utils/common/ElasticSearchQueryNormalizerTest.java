@@ -0,0 +1,79 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchQueryNormalizerTest {
+
+    @Test
+    void testNormalize() {
+        BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery()
+                .must(QueryBuilders.boolQuery().must(QueryBuilders.matchQuery("title", "x")))
+                .must(QueryBuilders.boolQuery()
+                        .filter(QueryBuilders.rangeQuery("price").gte(10).lte(100))
+                        .mustNot(QueryBuilders.termQuery("state", "deleted")))
+                .filter(QueryBuilders.rangeQuery("price").gt(20).lte(200))
+                .filter(QueryBuilders.termQuery("a", "1"))
+                .filter(QueryBuilders.termQuery("a", "1"))
+                .should(QueryBuilders.termQuery("tag", "b"))
+                .should(QueryBuilders.termQuery("tag", "a"))
+                .should(QueryBuilders.boolQuery().should(QueryBuilders.termsQuery("tag", "c", "a")))
+                .mustNot(QueryBuilders.termQuery("state", "hidden"));
+        QueryBuilder queryBuilder = ElasticSearchQueryNormalizer.normalize(boolQueryBuilder);
+        assertTrue(queryBuilder instanceof BoolQueryBuilder);
+        BoolQueryBuilder normalized = (BoolQueryBuilder) queryBuilder;
+        assertEquals(Collections.singletonList(QueryBuilders.matchQuery("title", "x")), normalized.must());
+        assertEquals(Arrays.asList(QueryBuilders.rangeQuery("price").gt(20).lte(100),
+                QueryBuilders.termQuery("a", "1")), normalized.filter());
+        assertEquals(Collections.singletonList(QueryBuilders.termsQuery("tag", "a", "b", "c")),
+                normalized.should());
+        assertEquals(Collections.singletonList(QueryBuilders.termsQuery("state", "deleted", "hidden")),
+                normalized.mustNot());
+    }
+
+    @Test
+    void testCanonical() {
+        QueryBuilder left = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.termQuery("b", 2))
+                .filter(QueryBuilders.termQuery("a", 1));
+        QueryBuilder right = QueryBuilders.boolQuery()
+                .filter(QueryBuilders.termQuery("a", 1))
+                .filter(QueryBuilders.termQuery("b", 2));
+        assertNotEquals(left, right);
+        assertEquals(ElasticSearchQueryNormalizer.normalize(left), ElasticSearchQueryNormalizer.normalize(right));
+        QueryBuilder single = QueryBuilders.boolQuery().must(QueryBuilders.boolQuery()
+                .should(QueryBuilders.termQuery("a", 1)));
+        assertEquals(QueryBuilders.termQuery("a", 1), ElasticSearchQueryNormalizer.normalize(single));
+        QueryBuilder boosted = QueryBuilders.boolQuery().must(QueryBuilders.termQuery("a", 1)).boost(2);
+        assertEquals(boosted, ElasticSearchQueryNormalizer.normalize(boosted));
+        QueryBuilder minimumShouldMatch = QueryBuilders.boolQuery()
+                .should(QueryBuilders.termQuery("a", 1))
+                .should(QueryBuilders.termQuery("a", 2))
+                .minimumShouldMatch(2);
+        assertEquals(2, ((BoolQueryBuilder) ElasticSearchQueryNormalizer.normalize(minimumShouldMatch))
+                .should().size());
+    }
+
+    @Test
+    void testOptionalShould() {
+        QueryBuilder queryBuilder = QueryBuilders.boolQuery()
+                .must(QueryBuilders.boolQuery().mustNot(QueryBuilders.termQuery("state", "deleted")))
+                .should(QueryBuilders.termQuery("tag", "a"))
+                .should(QueryBuilders.matchQuery("title", "b"));
+        BoolQueryBuilder normalized = (BoolQueryBuilder) ElasticSearchQueryNormalizer.normalize(queryBuilder);
+        assertTrue(normalized.must().isEmpty());
+        assertTrue(normalized.filter().isEmpty());
+        assertEquals(Collections.singletonList(QueryBuilders.termQuery("state", "deleted")), normalized.mustNot());
+        assertEquals(2, normalized.should().size());
+        assertEquals("0", normalized.minimumShouldMatch());
+        QueryBuilder required = QueryBuilders.boolQuery()
+                .mustNot(QueryBuilders.termQuery("state", "deleted"))
+                .should(QueryBuilders.termQuery("tag", "a"))
+                .should(QueryBuilders.matchQuery("title", "b"));
+        assertNull(((BoolQueryBuilder) ElasticSearchQueryNormalizer.normalize(required)).minimumShouldMatch());
+    }
+}
@@ -0,0 +1,67 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchQueryOptimizerTest {
+
+    @Test
+    void testOptimize() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", new Object[]{"x", "y"});
+        map.put("c", Arrays.asList(1, 10));
+        ElasticSearchQueryOptimizer.Report report =
+                ElasticSearchQueryOptimizer.optimize(ElasticSearchQueryBuilder.build(map, false));
+        assertTrue(report.isRewritten());
+        assertEquals(4, report.getRewrites().size());
+        assertTrue(report.getQueryBuilder() instanceof ConstantScoreQueryBuilder);
+        BoolQueryBuilder boolQueryBuilder =
+                (BoolQueryBuilder) ((ConstantScoreQueryBuilder) report.getQueryBuilder()).innerQuery();
+        assertEquals(3, boolQueryBuilder.filter().size());
+        assertTrue(boolQueryBuilder.must().isEmpty());
+        assertEquals(report.getQueryBuilder(), ElasticSearchQueryBuilder.build(map, true));
+
+        Map<String, Object> map1 = new LinkedHashMap<>();
+        map1.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST, Arrays.asList(
+                Collections.singletonMap("a", 1),
+                Collections.singletonMap(MatchQueryBuilder.NAME, Collections.singletonMap("b", "c")),
+                Collections.singletonMap(TermQueryBuilder.NAME, Collections.singletonMap("d",
+                        new HashMap<String, Object>(){{
+                            put("value", "e");
+                            put("boost", 2);
+                        }}))));
+        map1.put(ElasticSearchQueryBuilder.JOIN_TYPE_SHOULD, Collections.singletonMap("f", 1));
+        QueryBuilder queryBuilder1 = ElasticSearchQueryBuilder.build(map1, true);
+        assertTrue(queryBuilder1 instanceof BoolQueryBuilder);
+        BoolQueryBuilder boolQueryBuilder1 = (BoolQueryBuilder) queryBuilder1;
+        assertEquals(1, boolQueryBuilder1.filter().size());
+        assertEquals(2, boolQueryBuilder1.must().size());
+        assertEquals(1, boolQueryBuilder1.should().size());
+
+        Map<String, Object> map2 = Collections.singletonMap(MatchQueryBuilder.NAME,
+                Collections.singletonMap("b", "c"));
+        ElasticSearchQueryOptimizer.Report report2 =
+                ElasticSearchQueryOptimizer.optimize(ElasticSearchQueryBuilder.build(map2, false));
+        assertFalse(report2.isRewritten());
+        assertTrue(report2.getQueryBuilder() instanceof MatchQueryBuilder);
+    }
+
+    @Test
+    void testEnabled() {
+        Map<String, Object> map = Collections.singletonMap("a", 1);
+        assertFalse(ElasticSearchQueryOptimizer.isEnabled());
+        assertTrue(ElasticSearchQueryBuilder.build(map) instanceof TermQueryBuilder);
+        ElasticSearchQueryOptimizer.setEnabled(true);
+        try {
+            assertTrue(ElasticSearchQueryBuilder.build(map) instanceof ConstantScoreQueryBuilder);
+            assertTrue(ElasticSearchQueryBuilder.build(map, false) instanceof TermQueryBuilder);
+        } finally {
+            ElasticSearchQueryOptimizer.setEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.loeyae.tools.es_utils.common;
+
+import org.elasticsearch.index.query.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchQueryTemplateTest {
+
+    @BeforeEach
+    void setUp() {
+        ElasticSearchQueryTemplate.setCacheCapacity(ElasticSearchQueryTemplate.DEFAULT_CACHE_CAPACITY);
+        ElasticSearchQueryTemplate.clearCache();
+    }
+
+    @Test
+    void testBuild() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", new Object[]{"x", "y"});
+        map.put("c", Arrays.asList(1, 10));
+        map.put("d", new LinkedHashMap<String, Object>(){{
+            put("gt", 5);
+            put("format", "yyyy");
+            put("include_upper", false);
+        }});
+        QueryBuilder queryBuilder = ElasticSearchQueryTemplate.build(map);
+        assertTrue(queryBuilder instanceof BoolQueryBuilder);
+        assertEquals(legacyBool(ElasticSearchQueryBuilder.computedBoolQuery(map)), queryBuilder);
+        assertEquals(4, ((BoolQueryBuilder) queryBuilder).must().size());
+        Map<String, Object> map1 = new HashMap<>();
+        map1.put("name", "test");
+        QueryBuilder queryBuilder1 = ElasticSearchQueryTemplate.build(map1);
+        assertTrue(queryBuilder1 instanceof TermQueryBuilder);
+        assertEquals(ElasticSearchQueryBuilder.parseQueryBuilder(map1), queryBuilder1);
+        Map<String, Object> map2 = new LinkedHashMap<>();
+        map2.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST, Arrays.asList(
+                Collections.singletonMap("a", 1),
+                Collections.singletonMap(TermQueryBuilder.NAME, Collections.singletonMap("b", "c"))));
+        map2.put(ElasticSearchQueryBuilder.JOIN_TYPE_MUST_NOT, Collections.singletonMap("d",
+                Collections.singletonList(3)));
+        map2.put("ignored", 1);
+        QueryBuilder queryBuilder2 = ElasticSearchQueryTemplate.build(map2);
+        assertEquals(legacyBool(ElasticSearchQueryBuilder.filterBoolQuery(map2)), queryBuilder2);
+        assertEquals(2, ((BoolQueryBuilder) queryBuilder2).must().size());
+        assertEquals(1, ((BoolQueryBuilder) queryBuilder2).mustNot().size());
+        Map<String, Object> map3 = new HashMap<>();
+        map3.put("d", Collections.singletonMap("unknown", 1));
+        map3.put("e", 2);
+        assertThrows(RuntimeException.class, () -> ElasticSearchQueryTemplate.build(map3));
+    }
+
+    @Test
+    void testCache() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList(1, 2));
+        ElasticSearchQueryTemplate.build(map);
+        assertEquals(0, ElasticSearchQueryTemplate.hitCount());
+        assertEquals(1, ElasticSearchQueryTemplate.missCount());
+        map.put("a", 2);
+        map.put("b", Arrays.asList(3, 4));
+        QueryBuilder queryBuilder = ElasticSearchQueryTemplate.build(map);
+        assertEquals(1, ElasticSearchQueryTemplate.hitCount());
+        assertEquals(1, ElasticSearchQueryTemplate.cacheSize());
+        RangeQueryBuilder rangeQueryBuilder =
+                (RangeQueryBuilder) ((BoolQueryBuilder) queryBuilder).must().get(1);
+        assertEquals(3, rangeQueryBuilder.from());
+        assertEquals(4, rangeQueryBuilder.to());
+        map.put("b", "text");
+        ElasticSearchQueryTemplate.build(map);
+        assertEquals(2, ElasticSearchQueryTemplate.missCount());
+        assertEquals(2, ElasticSearchQueryTemplate.cacheSize());
+        ElasticSearchQueryTemplate.setCacheCapacity(1);
+        assertEquals(1, ElasticSearchQueryTemplate.cacheSize());
+        ElasticSearchQueryTemplate.setCacheCapacity(0);
+        ElasticSearchQueryTemplate.clearCache();
+        ElasticSearchQueryTemplate.build(map);
+        assertEquals(0, ElasticSearchQueryTemplate.cacheSize());
+    }
+
+    @Test
+    void testOptIn() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", new Object[]{"x", "y"});
+        assertEquals(ElasticSearchQueryTemplate.build(map), ElasticSearchQueryBuilder.build(map, false));
+        ElasticSearchQueryTemplate.clearCache();
+        ElasticSearchQueryBuilder.build(map, false);
+        assertEquals(0, ElasticSearchQueryTemplate.cacheSize());
+        assertEquals(0, ElasticSearchQueryTemplate.missCount());
+    }
+
+    private static QueryBuilder legacyBool(Map<String, Object> query) {
+        return ElasticSearchQueryBuilder.parseQueryBuilder(Collections.singletonMap(BoolQueryBuilder.NAME,
+                query));
+    }
+}
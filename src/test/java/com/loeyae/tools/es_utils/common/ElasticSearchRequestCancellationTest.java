@@ -0,0 +1,90 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchRequestCancellationTest {
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    private final AtomicReference<String> header = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            header.set(exchange.getRequestHeaders().getFirst(ElasticSearchRequestCancellation.HEADER_NAME));
+            received.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(
+                new HttpHost("localhost", server.getAddress().getPort()))
+                .setHttpClientConfigCallback(builder ->
+                        builder.addInterceptorLast(ElasticSearchRequestCancellation.INTERCEPTOR)));
+        try {
+            ElasticSearchRequestCancellation.Handle handle =
+                    ElasticSearchRequestCancellation.register(RequestOptions.DEFAULT);
+            assertEquals(1, ElasticSearchRequestCancellation.pending());
+            CompletableFuture<Exception> failure = new CompletableFuture<>();
+            client.searchAsync(new SearchRequest(), handle.getOptions(), new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse searchResponse) {
+                    handle.release();
+                    failure.complete(null);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    handle.release();
+                    failure.complete(e);
+                }
+            });
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertNull(header.get());
+            handle.cancel();
+            assertTrue(handle.isCancelled());
+            assertNotNull(failure.get(5, TimeUnit.SECONDS));
+            assertEquals(0, ElasticSearchRequestCancellation.pending());
+        } finally {
+            client.close();
+        }
+    }
+}
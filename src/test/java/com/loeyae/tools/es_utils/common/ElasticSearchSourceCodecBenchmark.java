@@ -0,0 +1,155 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.alibaba.fastjson.JSONObject;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ElasticSearchSourceCodec Benchmark.
+ *
+ * _source 解析为 Map 再转换为对象(map)与直接解码(codec)的对比,
+ * 运行: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.loeyae.tools.es_utils.common.ElasticSearchSourceCodecBenchmark
+ *
+ * @date 2026-10-17
+ * @version 1.0
+ * @author zhangyi<loeyae@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchSourceCodecBenchmark {
+
+    public static class Doc {
+
+        private long id;
+
+        private String name;
+
+        private String category;
+
+        private double price;
+
+        private int stock;
+
+        private boolean enabled;
+
+        private List<String> tags;
+
+        private long created;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public int getStock() {
+            return stock;
+        }
+
+        public void setStock(int stock) {
+            this.stock = stock;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public void setCreated(long created) {
+            this.created = created;
+        }
+    }
+
+    private BytesReference source;
+
+    private ElasticSearchSourceCodec<Doc> codec;
+
+    @Setup
+    public void setUp() {
+        source = new BytesArray("{\"id\":1024,\"name\":\"sample document name\",\"category\":\"books\"," +
+                "\"price\":19.99,\"stock\":120,\"enabled\":true,\"tags\":[\"a\",\"bb\",\"ccc\"]," +
+                "\"created\":1571270400000,\"description\":\"a field that is not mapped to the type\"}");
+        codec = ElasticSearchSourceCodec.of(Doc.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> mapOnly() {
+        return XContentHelper.convertToMap(source, false, XContentType.JSON).v2();
+    }
+
+    @Benchmark
+    public Doc map() {
+        return new JSONObject(XContentHelper.convertToMap(source, false, XContentType.JSON).v2())
+                .toJavaObject(Doc.class);
+    }
+
+    @Benchmark
+    public Doc codec() throws IOException {
+        return codec.decode(source);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ElasticSearchSourceCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,191 @@
+package com.loeyae.tools.es_utils.common;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchSourceCodecTest {
+
+    public enum Status {
+        ON, OFF
+    }
+
+    public static class Item {
+
+        private String name;
+
+        private Item child;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Item getChild() {
+            return child;
+        }
+
+        public void setChild(Item child) {
+            this.child = child;
+        }
+    }
+
+    public static class Doc {
+
+        private int id;
+
+        private long created;
+
+        private double price;
+
+        private Boolean enabled;
+
+        @JSONField(name = "doc_title")
+        private String title;
+
+        private Status status;
+
+        private List<String> tags;
+
+        private List<Item> items;
+
+        private Map<String, Object> extra;
+
+        private Date updated;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public void setCreated(long created) {
+            this.created = created;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public void setPrice(double price) {
+            this.price = price;
+        }
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+
+        public Map<String, Object> getExtra() {
+            return extra;
+        }
+
+        public void setExtra(Map<String, Object> extra) {
+            this.extra = extra;
+        }
+
+        public Date getUpdated() {
+            return updated;
+        }
+
+        public Doc setUpdated(Date updated) {
+            this.updated = updated;
+            return this;
+        }
+    }
+
+    @Test
+    void testDecode() throws IOException {
+        BytesReference source = new BytesArray("{\"id\":\"7\",\"created\":1571270400000,\"price\":9.5," +
+                "\"enabled\":null,\"doc_title\":\"t\",\"status\":\"OFF\",\"tags\":[\"a\",\"b\"]," +
+                "\"items\":[{\"name\":\"x\",\"child\":{\"name\":\"y\"}},{\"name\":\"z\"}]," +
+                "\"extra\":{\"k\":[1,2]},\"updated\":1571270400000,\"unknown\":{\"a\":[1,{\"b\":2}]}}");
+        Doc doc = ElasticSearchSourceCodec.of(Doc.class).decode(source);
+        assertEquals(7, doc.getId());
+        assertEquals(1571270400000L, doc.getCreated());
+        assertEquals(9.5, doc.getPrice());
+        assertNull(doc.getEnabled());
+        assertEquals("t", doc.getTitle());
+        assertEquals(Status.OFF, doc.getStatus());
+        assertEquals(Arrays.asList("a", "b"), doc.getTags());
+        assertEquals(2, doc.getItems().size());
+        assertEquals("y", doc.getItems().get(0).getChild().getName());
+        assertEquals("z", doc.getItems().get(1).getName());
+        assertEquals(Arrays.asList(1, 2), doc.getExtra().get("k"));
+        assertEquals(new Date(1571270400000L), doc.getUpdated());
+        assertSame(ElasticSearchSourceCodec.of(Doc.class), ElasticSearchSourceCodec.of(Doc.class));
+        assertNull(ElasticSearchSourceCodec.of(Doc.class).decode((BytesReference) null));
+    }
+
+    @Test
+    void testDecodeSmile() throws IOException {
+        XContentBuilder builder = XContentFactory.smileBuilder().startObject()
+                .field("name", "smile")
+                .startObject("child").field("name", "c").endObject()
+                .endObject();
+        Item item = ElasticSearchSourceCodec.of(Item.class).decode(BytesReference.bytes(builder));
+        assertEquals("smile", item.getName());
+        assertEquals("c", item.getChild().getName());
+    }
+
+    @Test
+    void testDecodeMalformed() {
+        assertThrows(ParsingException.class,
+                () -> ElasticSearchSourceCodec.of(Item.class).decode(new BytesArray("[1]")));
+        assertThrows(IllegalArgumentException.class, () -> ElasticSearchSourceCodec.of(Map.class));
+    }
+
+}
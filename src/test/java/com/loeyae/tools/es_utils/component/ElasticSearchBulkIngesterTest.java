@@ -0,0 +1,99 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchBulkIngesterTest {
+
+    private FakeBulkServer server;
+
+    private RestHighLevelClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeBulkServer().delayMillis(20).responder(action -> Boolean.TRUE.equals(action.source.get("fail"))
+                ? FakeBulkServer.failure(action, 400, "mapper_parsing_exception") : FakeBulkServer.success(action));
+        client = server.getClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static IndexRequest request(int id, boolean fail) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("id", id);
+        source.put("fail", fail);
+        return new IndexRequest("zy-sample", "_doc").source(source);
+    }
+
+    @Test
+    void testAdd() {
+        List<Long> positions = Collections.synchronizedList(new ArrayList<>());
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        ElasticSearchBulkIngester ingester = new ElasticSearchBulkIngester(client, 10, 1024 * 1024, 2)
+                .itemListener((item, position) -> positions.add(position))
+                .writeListener(indices -> written.addAll(Arrays.asList(indices)));
+        for (int i = 0; i < 95; i++) {
+            assertEquals(i, ingester.add(request(i, i % 30 == 7)));
+        }
+        ElasticSearchBulkIngester.Result result = ingester.finish();
+        assertEquals(95, result.getTotal());
+        assertEquals(92, result.getSucceeded());
+        assertEquals(3, result.getFailed());
+        assertEquals(10, result.getBulks());
+        assertEquals(10, server.bulks.get());
+        assertTrue(server.maxInflight.get() <= 2);
+        assertEquals(95, positions.size());
+        assertEquals(10, written.size());
+        List<Long> failed = result.getFailures().stream().map(ElasticSearchBulkIngester.Failure::getPosition)
+                .sorted().collect(Collectors.toList());
+        assertEquals(Arrays.asList(7L, 37L, 67L), failed);
+        assertEquals(RestStatus.BAD_REQUEST, result.getFailures().get(0).getStatus());
+        assertEquals(String.valueOf(result.getFailures().get(0).getPosition()),
+                result.getFailures().get(0).getId());
+        assertThrows(IllegalStateException.class, () -> ingester.add(request(0, false)));
+    }
+
+    @Test
+    void testMaxBytes() {
+        long size = ElasticSearchBulkIngester.sizeOf(request(10, false));
+        ElasticSearchBulkIngester ingester = new ElasticSearchBulkIngester(client, 1000, size * 4, 1);
+        List<IndexRequest> requests = new ArrayList<>();
+        for (int i = 10; i < 30; i++) {
+            requests.add(request(i, false));
+        }
+        ingester.addAll(requests.iterator());
+        ElasticSearchBulkIngester.Result result = ingester.finish();
+        assertEquals(20, result.getSucceeded());
+        assertEquals(5, result.getBulks());
+        assertEquals(1, server.maxInflight.get());
+        assertTrue(server.batchSizes.stream().allMatch(batch -> batch == 4));
+    }
+
+    @Test
+    void testBulkFailure() throws IOException {
+        server.stop();
+        ElasticSearchBulkIngester ingester = new ElasticSearchBulkIngester(client, 5, 1024 * 1024, 2);
+        for (int i = 0; i < 12; i++) {
+            ingester.add(request(i, false));
+        }
+        ElasticSearchBulkIngester.Result result = ingester.finish();
+        assertEquals(12, result.getFailed());
+        assertEquals(3, result.getBulks());
+        assertEquals(12, result.getFailures().size());
+        assertTrue(result.hasFailures());
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchBulkOperationsTest {
+
+    private FakeBulkServer server;
+
+    private RestHighLevelClient client;
+
+    private List<String> operations;
+
+    private List<Integer> batchSizes;
+
+    private List<XContentType> contentTypes;
+
+    private List<byte[]> bodies;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeBulkServer().responder(action -> {
+            boolean missing = action.id.startsWith("missing");
+            if ("delete".equals(action.op)) {
+                return FakeBulkServer.item(action, missing ? "not_found" : "deleted", missing ? 404 : 200);
+            } else if ("update".equals(action.op) && missing
+                    && !Boolean.TRUE.equals(action.source.get("doc_as_upsert"))) {
+                return FakeBulkServer.failure(action, 404, "document_missing_exception");
+            } else if ("create".equals(action.op) && action.id.startsWith("dup")) {
+                return FakeBulkServer.failure(action, 409, "version_conflict_engine_exception");
+            } else if ("update".equals(action.op) && missing) {
+                return FakeBulkServer.item(action, "created", 201);
+            }
+            return FakeBulkServer.success(action);
+        });
+        client = server.getClient();
+        operations = server.operations;
+        batchSizes = server.batchSizes;
+        contentTypes = server.contentTypes;
+        bodies = server.bodies;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static int indexOf(byte[] body, byte[] part) {
+        for (int i = 0; i + part.length <= body.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(body, i, i + part.length), part)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, Object> doc(int value) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("value", value);
+        return doc;
+    }
+
+    @Test
+    void testExecute() {
+        ElasticSearchBulkIngester.Result result = new ElasticSearchBulkOperations(
+                new ElasticSearchBulkIngester(client, 3, 1024 * 1024, 1))
+                .index("zy-sample", "1", doc(1))
+                .index("zy-sample", null, doc(2))
+                .create("zy-sample", "dup-1", doc(3))
+                .update("zy-sample", "1", doc(4))
+                .update("zy-sample", "missing-1", doc(5))
+                .update("zy-sample", "2", new Script("ctx._source.value++"))
+                .upsert("zy-sample", "missing-2", doc(6))
+                .delete("zy-sample", "2")
+                .delete("zy-sample", "missing-3")
+                .execute();
+        assertEquals(Arrays.asList("index:1", "index:auto", "create:dup-1", "update:1", "update:missing-1",
+                "update:2", "update:missing-2", "delete:2", "delete:missing-3"), operations);
+        assertEquals(Arrays.asList(3, 3, 3), batchSizes);
+        assertEquals(9, result.getTotal());
+        assertEquals(7, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        List<ElasticSearchBulkIngester.Failure> failures = result.getPermanentFailures().stream()
+                .sorted(Comparator.comparingLong(ElasticSearchBulkIngester.Failure::getPosition))
+                .collect(Collectors.toList());
+        assertEquals(2, failures.get(0).getPosition());
+        assertEquals(RestStatus.CONFLICT, failures.get(0).getStatus());
+        assertEquals(4, failures.get(1).getPosition());
+        assertEquals("missing-1", failures.get(1).getId());
+        assertEquals(RestStatus.NOT_FOUND, failures.get(1).getStatus());
+    }
+
+    @Test
+    void testDocumentUtils() {
+        ElasticSearchDocumentUtils utils = new ElasticSearchDocumentUtils();
+        utils.restHighLevelClient = client;
+        utils.init();
+        Map<String, Map<String, Object>> docs = new LinkedHashMap<>();
+        docs.put("1", doc(1));
+        docs.put("missing-1", doc(2));
+        ElasticSearchBulkIngester.Result result = utils.bulkUpdate("zy-sample", docs);
+        assertEquals(1, result.getSucceeded());
+        assertEquals(1, result.getFailures().get(0).getPosition());
+
+        result = utils.bulkUpsert("zy-sample", docs);
+        assertEquals(2, result.getSucceeded());
+
+        result = utils.bulkDelete("zy-sample", Arrays.asList("1", "missing-2"));
+        assertEquals(2, result.getSucceeded());
+        assertFalse(result.hasFailures());
+        assertEquals(Arrays.asList("update:1", "update:missing-1", "update:1", "update:missing-1",
+                "delete:1", "delete:missing-2"), operations);
+
+        result = utils.bulkOperations()
+                .add(new DeleteRequest("zy-sample", "_doc", "3"))
+                .upsert("zy-sample", "4", doc(4))
+                .execute();
+        assertEquals(2, result.getSucceeded());
+        assertEquals("delete:3", operations.get(6));
+    }
+
+    @Test
+    void testBytesSource() throws IOException {
+        ElasticSearchDocumentUtils utils = new ElasticSearchDocumentUtils();
+        utils.restHighLevelClient = client;
+        utils.init();
+        byte[] json = "{\"value\" :  1,\"b\":[ 2 ]}".getBytes(StandardCharsets.UTF_8);
+        String[] ids = utils.bulkInsert("zy-sample", Arrays.asList(new BytesArray(json), new BytesArray(json)),
+                XContentType.JSON);
+        assertEquals(2, ids.length);
+        assertEquals(XContentType.JSON, contentTypes.get(0));
+        int first = indexOf(bodies.get(0), json);
+        assertTrue(first > 0);
+        assertTrue(indexOf(Arrays.copyOfRange(bodies.get(0), first + json.length, bodies.get(0).length), json) > 0);
+
+        XContentBuilder builder = XContentFactory.smileBuilder().startObject().field("value", 1).endObject();
+        byte[] smile = BytesReference.toBytes(BytesReference.bytes(builder));
+        XContentBuilder cborBuilder = XContentFactory.cborBuilder().startObject().field("value", 2).endObject();
+        byte[] cbor = BytesReference.toBytes(BytesReference.bytes(cborBuilder));
+        ElasticSearchBulkIngester.Result result = utils.bulkIngest("zy-sample",
+                Arrays.asList(smile, smile).iterator(), XContentType.SMILE);
+        assertEquals(2, result.getSucceeded());
+        assertEquals(XContentType.SMILE, contentTypes.get(1));
+        assertTrue(indexOf(bodies.get(1), smile) > 0);
+
+        result = new ElasticSearchBulkOperations(new ElasticSearchBulkIngester(client, 100, 1024 * 1024, 1))
+                .index("zy-sample", "1", json, XContentType.JSON)
+                .index("zy-sample", "2", smile, XContentType.SMILE)
+                .index("zy-sample", "3", cbor, XContentType.CBOR)
+                .index("zy-sample", "4", doc(4))
+                .execute();
+        assertEquals(4, result.getSucceeded());
+        assertEquals(Arrays.asList(XContentType.JSON, XContentType.SMILE, XContentType.JSON, XContentType.SMILE,
+                XContentType.JSON), contentTypes);
+        assertEquals(2, FakeBulkServer.chunks(bodies.get(3), XContentType.SMILE).get(3).get("value"));
+        assertEquals(Arrays.asList(1, 2, 1), batchSizes.subList(2, 5));
+
+        assertEquals("1", utils.insert("zy-sample", "1", cbor, XContentType.CBOR));
+        assertEquals(XContentType.CBOR, contentTypes.get(5));
+        assertArrayEquals(cbor, bodies.get(5));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(json.length + 2);
+        buffer.put((byte) ' ').put(json).put((byte) ' ').flip().position(1).limit(json.length + 1);
+        assertEquals("1", utils.insert("zy-sample", null, buffer, XContentType.JSON));
+        assertArrayEquals(json, bodies.get(6));
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchBulkRetryTest {
+
+    private FakeBulkServer server;
+
+    private RestHighLevelClient client;
+
+    private List<Integer> batchSizes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeBulkServer().responder(action -> {
+            if (Boolean.TRUE.equals(action.source.get("fail"))) {
+                return FakeBulkServer.failure(action, 400, "mapper_parsing_exception");
+            }
+            return action.attempt < (Integer) action.source.get("reject")
+                    ? FakeBulkServer.rejected(action) : FakeBulkServer.success(action);
+        });
+        client = server.getClient();
+        batchSizes = server.batchSizes;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static IndexRequest request(int id, int reject, boolean fail) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("id", id);
+        source.put("reject", reject);
+        source.put("fail", fail);
+        return new IndexRequest("zy-sample", "_doc").source(source);
+    }
+
+    @Test
+    void testExecute() throws IOException {
+        ElasticSearchBulkRetry retry = new ElasticSearchBulkRetry(3, 1L, 5L, 0.2, 1000L);
+        BulkRequest bulkRequest = new BulkRequest();
+        for (int i = 0; i < 10; i++) {
+            bulkRequest.add(request(i, i == 2 ? 2 : (i == 7 ? 5 : 0), i == 5));
+        }
+        ElasticSearchBulkRetry.Outcome outcome = retry.execute(bulkRequest,
+                request -> client.bulk(request, RequestOptions.DEFAULT));
+        BulkItemResponse[] items = outcome.getItems();
+        assertEquals(10, items.length);
+        assertEquals(Arrays.asList(10, 2, 2, 1), batchSizes);
+        assertEquals(4, outcome.getBulks());
+        assertEquals(5, outcome.getRetries());
+        assertFalse(items[2].isFailed());
+        assertEquals("2", items[2].getId());
+        assertEquals(RestStatus.BAD_REQUEST, items[5].getFailure().getStatus());
+        assertEquals(RestStatus.TOO_MANY_REQUESTS, items[7].getFailure().getStatus());
+        assertEquals(8, Arrays.stream(items).filter(item -> !item.isFailed()).count());
+        assertEquals(5, retry.getRetried());
+        assertEquals(1, retry.getExhausted());
+    }
+
+    @Test
+    void testBudget() throws IOException {
+        ElasticSearchBulkRetry retry = new ElasticSearchBulkRetry(3, 1L, 5L, 0, 1L);
+        BulkRequest bulkRequest = new BulkRequest();
+        for (int i = 0; i < 5; i++) {
+            bulkRequest.add(request(i, i < 3 ? 1 : 0, false));
+        }
+        ElasticSearchBulkRetry.Outcome outcome = retry.execute(bulkRequest,
+                request -> client.bulk(request, RequestOptions.DEFAULT));
+        assertEquals(Arrays.asList(5, 1), batchSizes);
+        assertEquals(1, outcome.getRetries());
+        assertEquals(2, Arrays.stream(outcome.getItems()).filter(ElasticSearchBulkRetry::isRetryable).count());
+        assertEquals(0, retry.getBudget());
+        assertEquals(2, retry.getExhausted());
+
+        ElasticSearchBulkRetry refill = new ElasticSearchBulkRetry(3, 1L, 5L, 0.5, 10L);
+        assertEquals(10, refill.getBudget());
+        assertEquals(4, refill.acquire(0, 4));
+        refill.deposit(4);
+        assertEquals(8, refill.getBudget());
+        refill.deposit(100);
+        assertEquals(10, refill.getBudget());
+        assertEquals(0, refill.acquire(3, 1));
+    }
+
+    @Test
+    void testRejectedBulk() throws IOException {
+        server.rejectBulks.set(1);
+        ElasticSearchBulkRetry retry = new ElasticSearchBulkRetry(3, 1L, 5L, 0.2, 1000L);
+        BulkRequest bulkRequest = new BulkRequest();
+        for (int i = 0; i < 4; i++) {
+            bulkRequest.add(request(i, 0, false));
+        }
+        ElasticSearchBulkRetry.Outcome outcome = retry.execute(bulkRequest,
+                request -> client.bulk(request, RequestOptions.DEFAULT));
+        assertEquals(Arrays.asList(4, 4), batchSizes);
+        assertEquals(4, outcome.getRetries());
+        assertTrue(Arrays.stream(outcome.getItems()).noneMatch(BulkItemResponse::isFailed));
+    }
+
+    @Test
+    void testIngester() {
+        ElasticSearchBulkIngester ingester = new ElasticSearchBulkIngester(client, 4, 1024 * 1024, 2)
+                .retry(new ElasticSearchBulkRetry(3, 1L, 5L, 0.2, 1000L));
+        for (int i = 0; i < 12; i++) {
+            ingester.add(request(i, i % 4 == 1 ? 2 : (i == 10 ? 9 : 0), i == 6));
+        }
+        ElasticSearchBulkIngester.Result result = ingester.finish();
+        assertEquals(12, result.getTotal());
+        assertEquals(10, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(9, result.getRetried());
+        assertEquals(1, result.getPermanentFailures().size());
+        assertEquals(6, result.getPermanentFailures().get(0).getPosition());
+        assertEquals(1, result.getRejectedFailures().size());
+        assertEquals(10, result.getRejectedFailures().get(0).getPosition());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 4));
+    }
+
+    @Test
+    void testBackoff() {
+        ElasticSearchBulkRetry retry = new ElasticSearchBulkRetry(5, 10L, 40L, 0.2, 1000L);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(retry.backoff(0) <= 10);
+            assertTrue(retry.backoff(1) <= 20);
+            assertTrue(retry.backoff(4) <= 40);
+            assertTrue(retry.backoff(64) <= 40);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ElasticSearchBulkRetry(3, 10L, 5L, 0.2, 1L));
+    }
+
+}
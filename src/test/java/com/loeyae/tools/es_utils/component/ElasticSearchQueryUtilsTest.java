@@ -4,12 +4,20 @@ import com.alibaba.fastjson.JSONObject;
 import org.elasticsearch.action.search.ClearScrollResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
 import org.elasticsearch.common.xcontent.DeprecationHandler;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.metrics.sum.ParsedSum;
@@ -17,6 +25,7 @@ import org.elasticsearch.search.aggregations.metrics.valuecount.ParsedValueCount
 import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCountAggregationBuilder;
 import org.elasticsearch.search.aggregations.support.ValueType;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,11 +34,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -153,6 +169,176 @@ class ElasticSearchQueryUtilsTest {
         assertTrue(result.getSource().size() > 0);
     }
 
+    @Test
+    void testCount() {
+        Map<String, Object> search = new HashMap<String, Object>(){{
+            put("id", 1);
+        }};
+        SearchResponse searchResponse = utils.search(indexName, search, 0, 0, null, null, null);
+        assertNotNull(searchResponse);
+        assertEquals(searchResponse.getHits().getTotalHits(), utils.count(indexName, search));
+        assertEquals(utils.count(indexName, search), utils.count(indexName, "{'id': 1}"));
+        assertTrue(utils.count(indexName, (QueryBuilder) null) >= utils.count(indexName, search));
+        assertEquals(-1L, utils.count("zy-missing-index", search));
+        assertTrue(utils.exists(indexName, search));
+        assertTrue(utils.exists(indexName, "{'id': 1}"));
+        assertFalse(utils.exists(indexName, QueryBuilders.termQuery("id", -1)));
+        assertFalse(utils.exists("zy-missing-index", search));
+    }
+
+    @Test
+    void testSearchAsync() throws Exception {
+        CompletableFuture<SearchResponse> future = utils.searchAsync(indexName,
+                new HashMap<String, Object>(){{
+                    put("id", 1);
+                }}, 2, 0, null, null, null);
+        SearchResponse searchResponse = future.get(10, TimeUnit.SECONDS);
+        assertTrue(RestStatus.OK == searchResponse.status());
+        ElasticSearchQueryUtils.Result result = utils.resultAsync(new SearchRequest(indexName))
+                .get(10, TimeUnit.SECONDS);
+        assertTrue(result.getTotal() > 0);
+        CompletableFuture<ElasticSearchQueryUtils.Result> cancelled =
+                utils.resultAsync(new SearchRequest(indexName));
+        assertTrue(cancelled.cancel(true));
+        assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    void testSearchAfter() {
+        ElasticSearchQueryUtils.Result first = utils.searchAfter(indexName, (QueryBuilder) null, 2,
+                null, null, null, null);
+        assertNotNull(first);
+        assertTrue(first.getTotal() > 0);
+        assertNotNull(first.getCursor());
+        ElasticSearchQueryUtils.Result next = utils.searchAfter(indexName, (QueryBuilder) null, 2,
+                null, first.getCursor(), null, null);
+        assertNotNull(next);
+        long seen = first.getCount() + next.getCount();
+        String cursor = next.getCursor();
+        while (null != cursor) {
+            ElasticSearchQueryUtils.Result page = utils.searchAfter(indexName, (QueryBuilder) null, 2,
+                    null, cursor, null, null);
+            seen += page.getCount();
+            cursor = page.getCursor();
+        }
+        assertEquals(first.getTotal(), seen);
+    }
+
+    private static SearchResponse response(SearchHit... hits) {
+        return response(null, hits);
+    }
+
+    private static SearchResponse response(String scrollId, SearchHit... hits) {
+        return new SearchResponse(new InternalSearchResponse(new SearchHits(hits, hits.length, 1f), null, null,
+                null, false, null, 1), scrollId, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY,
+                SearchResponse.Clusters.EMPTY);
+    }
+
+    @Test
+    void testBuildSearchAfterRequest() {
+        SearchRequest empty = utils.buildSearchAfterRequest(indexName, null, 2, new HashMap<>(), null,
+                null, null);
+        assertEquals(1, empty.source().sorts().size());
+        Map<String, Integer> sort = new LinkedHashMap<>();
+        sort.put("_id", 1);
+        sort.put("id", 1);
+        SearchRequest tiebreaker = utils.buildSearchAfterRequest(indexName, null, 2, sort, null, null, null);
+        assertEquals(1, tiebreaker.source().sorts().size());
+        sort.remove("_id");
+        sort.put("_id", 1);
+        SearchRequest later = utils.buildSearchAfterRequest(indexName, null, 2, sort, null, null, null);
+        assertEquals(2, later.source().sorts().size());
+    }
+
+    @Test
+    void testResultLazy() {
+        SearchHit[] hits = new SearchHit[3];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = new SearchHit(i, String.valueOf(i), null, null);
+            hits[i].sourceRef(new BytesArray("{\"id\":" + i + "}"));
+            hits[i].sortValues(new Object[]{i}, new DocValueFormat[]{DocValueFormat.RAW});
+        }
+        ElasticSearchQueryUtils.Result result = ElasticSearchQueryUtils.result(response(hits));
+        assertEquals(3, result.getCount());
+        assertEquals(1, result.sourceAt(1).get("id"));
+        List<Integer> ids = new ArrayList<>();
+        result.forEachSource(source -> ids.add((Integer) source.get("id")));
+        assertEquals(Arrays.asList(0, 1, 2), ids);
+        assertEquals(3, result.getSource().size());
+        assertSame(result.sourceAt(2), result.getSource().get(2));
+        result.getSource().remove(0);
+        result.getSource().add(new HashMap<>());
+        assertEquals(3, result.getSource().size());
+        assertEquals(1, result.getSource().get(0).get("id"));
+        assertNull(result.getAggregations());
+        assertNotNull(result.getCursor());
+    }
+
+    @Test
+    void testSearchDocValues() {
+        ElasticSearchQueryUtils.Result result = utils.searchDocValues(indexName, (QueryBuilder) null, 2, 0,
+                null, "id");
+        assertNotNull(result);
+        assertTrue(result.getCount() > 0);
+        assertNull(result.sourceRefAt(0));
+        assertNotNull(result.longFieldAt(0, "id"));
+        assertEquals(result.getCount(), result.longColumn("id", -1L).length);
+        ElasticSearchQueryUtils.Result stored = utils.searchStoredFields(indexName, (QueryBuilder) null, 2, 0,
+                null, "_id");
+        assertNotNull(stored);
+        assertNull(stored.sourceRefAt(0));
+    }
+
+    @Test
+    void testResultFields() {
+        SearchHit[] hits = new SearchHit[3];
+        for (int i = 0; i < hits.length; i++) {
+            Map<String, DocumentField> fields = new HashMap<>();
+            fields.put("id", new DocumentField("id", Collections.singletonList((long) i)));
+            fields.put("price", new DocumentField("price", Arrays.asList(i + 0.5, i + 1.5)));
+            if (i != 1) {
+                fields.put("name", new DocumentField("name", Collections.singletonList("name" + i)));
+            }
+            hits[i] = new SearchHit(i, String.valueOf(i), null, fields);
+        }
+        ElasticSearchQueryUtils.Result result = ElasticSearchQueryUtils.result(response(hits));
+        assertEquals(Long.valueOf(2), result.longFieldAt(2, "id"));
+        assertEquals(Double.valueOf(1.5), result.doubleFieldAt(1, "price"));
+        assertEquals(Arrays.asList(1.5, 2.5), result.fieldValuesAt(1, "price"));
+        assertEquals("name0", result.stringFieldAt(0, "name"));
+        assertNull(result.stringFieldAt(1, "name"));
+        assertTrue(result.fieldValuesAt(1, "name").isEmpty());
+        assertEquals(0.5, result.fieldsAt(0).get("price"));
+        assertArrayEquals(new long[]{0, 1, 2}, result.longColumn("id", -1L));
+        assertArrayEquals(new double[]{0.5, 1.5, 2.5}, result.doubleColumn("price", 0), 1e-9);
+        assertArrayEquals(new long[]{-1, -1, -1}, result.longColumn("missing", -1L));
+    }
+
+    @Test
+    void testResultWriteTo() throws IOException {
+        SearchHit[] hits = new SearchHit[2];
+        hits[0] = new SearchHit(0, "0", null, null);
+        hits[0].sourceRef(new BytesArray("{\"id\":0,\"name\":\"a\\\"b\"}"));
+        hits[1] = new SearchHit(1, "1", null, null);
+        hits[1].sourceRef(BytesReference.bytes(XContentFactory.smileBuilder().startObject()
+                .field("id", 1).field("tags", Arrays.asList("x", "y")).endObject()));
+        ElasticSearchQueryUtils.Result result = ElasticSearchQueryUtils.result(response("scroll", hits));
+        assertSame(hits[0].getSourceRef(), result.sourceRefAt(0));
+        List<BytesReference> refs = new ArrayList<>();
+        result.forEachSourceRef(refs::add);
+        assertEquals(2, refs.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.writeTo(out);
+        JSONObject written = JSONObject.parseObject(out.toString("UTF-8"));
+        JSONObject expected = JSONObject.parseObject(result.toString());
+        assertEquals(expected.get("source"), written.get("source"));
+        assertEquals("scroll", written.getString("scrollId"));
+        assertEquals(2, written.getIntValue("total"));
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        result.writeTo(Channels.newChannel(channelOut));
+        assertArrayEquals(out.toByteArray(), channelOut.toByteArray());
+    }
+
     @Test
     void testScrollByNull() {
         SearchResponse searchResponse = utils.search(indexName, (String )null, 100, 60L,
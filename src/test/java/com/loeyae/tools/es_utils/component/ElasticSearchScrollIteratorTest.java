@@ -0,0 +1,48 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.search.SearchHit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchScrollIteratorTest {
+
+    @Test
+    void testDrainAfterFinish() throws InterruptedException {
+        ElasticSearchScrollUtils.ScrollIterator iterator = new ElasticSearchScrollUtils.ScrollIterator(4);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                iterator.offer(new SearchHit(i, String.valueOf(i), null, null));
+            }
+            iterator.finish(10);
+        });
+        producer.start();
+        Thread.sleep(200);
+        List<String> ids = new ArrayList<>();
+        try (ElasticSearchScrollUtils.ScrollIterator hits = iterator) {
+            while (hits.hasNext()) {
+                ids.add(hits.next().getId());
+            }
+            assertFalse(hits.isFailed());
+        }
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(10, ids.size());
+        assertEquals("0", ids.get(0));
+        assertEquals("9", ids.get(9));
+    }
+
+    @Test
+    void testFailed() {
+        ElasticSearchScrollUtils.ScrollIterator iterator = new ElasticSearchScrollUtils.ScrollIterator(4);
+        iterator.offer(new SearchHit(0, "0", null, null));
+        iterator.finish(-1);
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+        assertTrue(iterator.isFailed());
+        iterator.close();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class ElasticSearchScrollUtilsTest {
+
+    private static final String indexName = "zy-sample";
+
+    @Autowired
+    ElasticSearchScrollUtils utils;
+
+    @Autowired
+    ElasticSearchQueryUtils queryUtils;
+
+    @Test
+    void testSlicedScroll() {
+        long total = queryUtils.search(indexName, (String) null, 0,
+                ElasticSearchQueryUtils.QUERY_FORM_NULL, null, null, null).getHits().getTotalHits();
+        SearchRequest searchRequest = new SearchRequest(indexName)
+                .source(new SearchSourceBuilder().size(2));
+        Set<String> ids = new HashSet<>();
+        long count = utils.slicedScroll(searchRequest, 2, hit -> ids.add(hit.getId()));
+        assertEquals(total, count);
+        assertEquals(total, ids.size());
+        long shardCount = utils.slicedScroll(searchRequest, 0, hit -> {});
+        assertEquals(total, shardCount);
+    }
+
+    @Test
+    void testSlicedScrollIterator() {
+        SearchRequest searchRequest = new SearchRequest(indexName)
+                .source(new SearchSourceBuilder().size(2));
+        long count = 0;
+        try (ElasticSearchScrollUtils.ScrollIterator iterator = utils.slicedScrollIterator(searchRequest, 2, 4)) {
+            while (iterator.hasNext()) {
+                SearchHit hit = iterator.next();
+                assertNotNull(hit.getId());
+                count++;
+            }
+            assertFalse(iterator.isFailed());
+        }
+        assertTrue(count > 0);
+    }
+
+    @Test
+    void testScrollStream() {
+        long total = queryUtils.search(indexName, (String) null, 0,
+                ElasticSearchQueryUtils.QUERY_FORM_NULL, null, null, null).getHits().getTotalHits();
+        try (Stream<Map<String, Object>> stream = utils.scrollStream(indexName, null, 2, 30L, 2)) {
+            assertEquals(total, stream.count());
+        }
+        try (Stream<SearchHit> stream = utils.scrollStream(new SearchRequest(indexName)
+                .source(new SearchSourceBuilder().size(2)), 1)) {
+            assertEquals(1, stream.limit(1).count());
+        }
+        assertThrows(IllegalArgumentException.class, () -> utils.scrollIterator(new SearchRequest(indexName), 3));
+    }
+
+}
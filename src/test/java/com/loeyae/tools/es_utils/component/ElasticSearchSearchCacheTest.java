@@ -0,0 +1,182 @@
+package com.loeyae.tools.es_utils.component;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchSearchCacheTest {
+
+    private static SearchRequest request(String index, int value) {
+        return new SearchRequest(index).source(new SearchSourceBuilder()
+                .query(QueryBuilders.termQuery("id", value)).size(1));
+    }
+
+    private static SearchResponse response(int sourceBytes) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < sourceBytes; i++) {
+            value.append('x');
+        }
+        SearchHit hit = new SearchHit(1, "1", null, Collections.emptyMap());
+        hit.sourceRef(new BytesArray("{\"value\":\"" + value + "\"}"));
+        SearchHits hits = new SearchHits(new SearchHit[]{hit}, 1, 1.0f);
+        return new SearchResponse(new InternalSearchResponse(hits, null, null, null, false, null, 1),
+                null, 1, 1, 0, 1, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
+    @Test
+    void testExecute() {
+        ElasticSearchSearchCache cache = new ElasticSearchSearchCache(1024 * 1024, 60_000L, 0L);
+        AtomicInteger calls = new AtomicInteger();
+        SearchResponse first = cache.execute(request("zy-sample", 1), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        assertSame(first, cache.execute(request("zy-sample", 1), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        }));
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getBytes() > 0);
+        cache.execute(request("zy-sample", 2), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        assertEquals(2, calls.get());
+        cache.execute(request("zy-sample", 3).scroll("1m"), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        cache.execute(request("zy-sample", 3).scroll("1m"), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        assertEquals(4, calls.get());
+        cache.execute(request("zy-sample", 4).requestCache(false), () -> {
+            calls.incrementAndGet();
+            return null;
+        });
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void testSharedSource() {
+        ElasticSearchSearchCache cache = new ElasticSearchSearchCache(1024 * 1024, 60_000L, 0L);
+        ElasticSearchQueryUtils.Result first = ElasticSearchQueryUtils.result(
+                cache.execute(request("zy-sample", 1), () -> response(2)));
+        first.sourceAt(0).put("value", "changed");
+        first.getSource().get(0).remove("value");
+        ElasticSearchQueryUtils.Result second = ElasticSearchQueryUtils.result(
+                cache.execute(request("zy-sample", 1), () -> response(2)));
+        assertEquals(1, cache.getHits());
+        assertEquals("xx", second.sourceAt(0).get("value"));
+        assertEquals("xx", second.getSource().get(0).get("value"));
+    }
+
+    @Test
+    void testInvalidate() {
+        ElasticSearchSearchCache cache = new ElasticSearchSearchCache(1024 * 1024, 60_000L, 0L);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            cache.execute(request("zy-sample", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+            cache.execute(request("zy-other", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+            cache.execute(request("zy-*", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+        }
+        assertEquals(3, calls.get());
+        cache.invalidate("zy-sample");
+        for (int i = 0; i < 2; i++) {
+            cache.execute(request("zy-sample", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+            cache.execute(request("zy-other", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+            cache.execute(request("zy-*", 1), () -> {
+                calls.incrementAndGet();
+                return response(10);
+            });
+        }
+        assertEquals(5, calls.get());
+        ElasticSearchSearchCache refresh = new ElasticSearchSearchCache(1024 * 1024, 60_000L, 60_000L);
+        refresh.invalidate("zy-sample");
+        refresh.execute(request("zy-sample", 1), () -> response(10));
+        assertEquals(0, refresh.getSize());
+        refresh.execute(request("zy-other", 1), () -> response(10));
+        assertEquals(1, refresh.getSize());
+    }
+
+    @Test
+    void testTtl() throws Exception {
+        ElasticSearchSearchCache cache = new ElasticSearchSearchCache(1024 * 1024, 60_000L, 0L);
+        cache.setTtl("zy-short:0,zy-long:3600");
+        cache.setTtl("zy-fast", 50L);
+        cache.execute(request("zy-short", 1), () -> response(10));
+        assertEquals(0, cache.getSize());
+        cache.execute(request("zy-short,zy-long", 1), () -> response(10));
+        assertEquals(0, cache.getSize());
+        cache.execute(request("zy-long", 1), () -> response(10));
+        assertEquals(1, cache.getSize());
+        AtomicInteger calls = new AtomicInteger();
+        cache.execute(request("zy-fast", 1), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        Thread.sleep(100);
+        cache.execute(request("zy-fast", 1), () -> {
+            calls.incrementAndGet();
+            return response(10);
+        });
+        assertEquals(2, calls.get());
+        assertThrows(IllegalArgumentException.class, () -> cache.setTtl("zy-sample"));
+    }
+
+    @Test
+    void testEviction() {
+        ElasticSearchSearchCache cache = new ElasticSearchSearchCache(16 * 1024, 60_000L, 0L);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 4; i++) {
+                cache.execute(request("zy-sample", i), () -> response(1024));
+            }
+        }
+        for (int i = 100; i < 200; i++) {
+            cache.execute(request("zy-sample", i), () -> response(1024));
+            assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        }
+        assertTrue(cache.getEvictions() + cache.getRejections() > 0);
+        long hits = cache.getHits();
+        for (int i = 0; i < 4; i++) {
+            cache.execute(request("zy-sample", i), () -> response(1024));
+        }
+        assertEquals(hits + 4, cache.getHits());
+        cache.execute(request("zy-sample", 1000), () -> response(32 * 1024));
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+}
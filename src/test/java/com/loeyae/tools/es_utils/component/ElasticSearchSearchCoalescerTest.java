@@ -0,0 +1,141 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchSearchCoalescerTest {
+
+    private static final String SEARCH_RESPONSE = "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1," +
+            "\"successful\":1,\"skipped\":0,\"failed\":0},\"hits\":{\"total\":%d,\"max_score\":null,\"hits\":[]}";
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private RestHighLevelClient client;
+
+    private final AtomicInteger msearch = new AtomicInteger();
+
+    private final AtomicInteger search = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            String body;
+            if (exchange.getRequestURI().getPath().endsWith("_msearch")) {
+                msearch.incrementAndGet();
+                List<String> lines = new BufferedReader(new InputStreamReader(exchange.getRequestBody(),
+                        StandardCharsets.UTF_8)).lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+                List<String> items = new ArrayList<>();
+                for (int i = 1; i < lines.size(); i += 2) {
+                    int size = Integer.parseInt(lines.get(i).replaceAll(".*\"size\":(\\d+).*", "$1"));
+                    items.add(size == 99 ? "{\"error\":{\"type\":\"index_not_found_exception\"," +
+                            "\"reason\":\"no such index\"},\"status\":404}" :
+                            String.format(SEARCH_RESPONSE, size) + ",\"status\":200}");
+                }
+                body = "{\"responses\":[" + String.join(",", items) + "]}";
+            } else {
+                search.incrementAndGet();
+                body = String.format(SEARCH_RESPONSE, 0) + "}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        client = new RestHighLevelClient(RestClient.builder(
+                new HttpHost("localhost", server.getAddress().getPort())));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static SearchRequest request(int size) {
+        SearchRequest searchRequest = new SearchRequest("zy-sample");
+        searchRequest.source().size(size);
+        return searchRequest;
+    }
+
+    @Test
+    void testSubmit() throws Exception {
+        try (ElasticSearchSearchCoalescer coalescer = new ElasticSearchSearchCoalescer(client, 50L, 4,
+                new int[]{1, 2, 4})) {
+            List<CompletableFuture<SearchResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(coalescer.submit(request(i + 1)));
+            }
+            CompletableFuture<SearchResponse> failed = coalescer.submit(request(99));
+            CompletableFuture<SearchResponse> last = coalescer.submit(request(5));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i + 1, futures.get(i).get(5, TimeUnit.SECONDS).getHits().getTotalHits());
+            }
+            assertEquals(5, last.get(5, TimeUnit.SECONDS).getHits().getTotalHits());
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause().getMessage().contains("no such index"));
+            assertEquals(2, msearch.get());
+            assertEquals(2, coalescer.getBatches());
+            assertEquals(6, coalescer.getRequests());
+            Map<Integer, Long> histogram = coalescer.getBatchSizeHistogram();
+            assertEquals(Long.valueOf(1), histogram.get(2));
+            assertEquals(Long.valueOf(1), histogram.get(4));
+            coalescer.submit(request(1)).get(5, TimeUnit.SECONDS);
+            assertEquals(1, search.get());
+            assertEquals(Long.valueOf(1), coalescer.getBatchSizeHistogram().get(1));
+        }
+    }
+
+    @Test
+    void testSubmitAfterClose() throws Exception {
+        ElasticSearchSearchCoalescer coalescer = new ElasticSearchSearchCoalescer(client, 10000L, 8, null);
+        CompletableFuture<SearchResponse> pending = coalescer.submit(request(1));
+        coalescer.close();
+        assertNotNull(pending.get(5, TimeUnit.SECONDS));
+        CompletableFuture<SearchResponse> first = coalescer.submit(request(2));
+        CompletableFuture<SearchResponse> second = coalescer.submit(request(3));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(3, search.get());
+        assertEquals(3, coalescer.getBatches());
+    }
+
+    @Test
+    void testScrollRejected() {
+        try (ElasticSearchSearchCoalescer coalescer = new ElasticSearchSearchCoalescer(client)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> coalescer.submit(request(1).scroll("1m")));
+        }
+    }
+
+}
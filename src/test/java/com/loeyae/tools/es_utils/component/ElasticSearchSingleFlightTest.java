@@ -0,0 +1,125 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.loeyae.tools.es_utils.common.ElasticSearchFingerprint;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticSearchSingleFlightTest {
+
+    private static SearchRequest request(String index, int value) {
+        return new SearchRequest(index).source(new SearchSourceBuilder()
+                .query(QueryBuilders.termQuery("id", value)).size(0));
+    }
+
+    @Test
+    void testExecute() throws Exception {
+        ElasticSearchSingleFlight singleFlight = new ElasticSearchSingleFlight();
+        ElasticSearchFingerprint key = ElasticSearchFingerprint.ofRequest(request("zy-sample", 1));
+        assertEquals(key, ElasticSearchFingerprint.ofRequest(request("zy-sample", 1)));
+        assertNotEquals(key, ElasticSearchFingerprint.ofRequest(request("zy-sample", 2)));
+        assertNotEquals(key, ElasticSearchFingerprint.ofRequest(request("zy-other", 1)));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            Object shared = new Object();
+            futures.add(executor.submit(() -> singleFlight.execute(key, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return shared;
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute(key, () -> {
+                    calls.incrementAndGet();
+                    return new Object();
+                })));
+            }
+            while (singleFlight.getSuppressed() < 7) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<Object> future : futures) {
+                assertSame(shared, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(1, singleFlight.getExecuted());
+            assertEquals(0, singleFlight.getInflight());
+            assertNotSame(shared, singleFlight.execute(key, Object::new));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSharedSource() throws Exception {
+        ElasticSearchSingleFlight singleFlight = new ElasticSearchSingleFlight();
+        ElasticSearchFingerprint key = ElasticSearchFingerprint.ofRequest(request("zy-sample", 1));
+        SearchHit hit = new SearchHit(1, "1", null, null);
+        hit.sourceRef(new BytesArray("{\"value\":1}"));
+        SearchResponse searchResponse = new SearchResponse(new InternalSearchResponse(
+                new SearchHits(new SearchHit[]{hit}, 1, 1f), null, null, null, false, null, 1), null, 1, 1, 0, 1,
+                ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SearchResponse> leader = executor.submit(() -> singleFlight.execute(key, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return searchResponse;
+            }));
+            while (singleFlight.getInflight() < 1) {
+                Thread.sleep(10);
+            }
+            Future<SearchResponse> follower = executor.submit(() -> singleFlight.execute(key, () -> null));
+            while (singleFlight.getSuppressed() < 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            ElasticSearchQueryUtils.Result first = ElasticSearchQueryUtils.result(leader.get(5, TimeUnit.SECONDS));
+            ElasticSearchQueryUtils.Result second = ElasticSearchQueryUtils.result(
+                    follower.get(5, TimeUnit.SECONDS));
+            assertSame(first.getSearchResponse(), second.getSearchResponse());
+            first.sourceAt(0).put("value", 2);
+            assertEquals(1, second.sourceAt(0).get("value"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testExecuteFailure() {
+        ElasticSearchSingleFlight singleFlight = new ElasticSearchSingleFlight();
+        ElasticSearchFingerprint key = ElasticSearchFingerprint.ofRequest(request("zy-sample", 1));
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute(key, () -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals(0, singleFlight.getInflight());
+    }
+
+}
@@ -0,0 +1,235 @@
+package com.loeyae.tools.es_utils.component;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用 _bulk 端点, 解析 JSON/SMILE bulk body, 按 action 逐条响应并记录请求.
+ * 其他路径按 index 请求响应 201.
+ */
+class FakeBulkServer implements AutoCloseable {
+
+    private static final String ITEM = "{\"%s\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\",\"_id\":\"%s\"," +
+            "\"_version\":1,\"result\":\"%s\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}," +
+            "\"_seq_no\":0,\"_primary_term\":1,\"status\":%d}}";
+
+    private static final String FAILED_ITEM = "{\"%s\":{\"_index\":\"zy-sample\",\"_type\":\"_doc\"," +
+            "\"_id\":\"%s\",\"status\":%d,\"error\":{\"type\":\"%s\",\"reason\":\"failed\"}}}";
+
+    private static final String INDEX_RESPONSE = "{\"_index\":\"zy-sample\",\"_type\":\"_doc\",\"_id\":\"1\"," +
+            "\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}," +
+            "\"_seq_no\":0,\"_primary_term\":1}";
+
+    private static final String REJECTED_BULK = "{\"error\":{\"type\":\"es_rejected_execution_exception\"," +
+            "\"reason\":\"rejected\"},\"status\":429}";
+
+    /**
+     * 单条 action 的响应
+     */
+    interface Responder {
+
+        String respond(Action action);
+    }
+
+    /**
+     * bulk 中的一条 action, id 取 _id, 没有时取 source 的 id 字段, 都没有为 auto
+     */
+    static class Action {
+
+        final String op;
+
+        final String id;
+
+        final Map<String, Object> source;
+
+        final int attempt;
+
+        Action(String op, String id, Map<String, Object> source, int attempt) {
+            this.op = op;
+            this.id = id;
+            this.source = source;
+            this.attempt = attempt;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final HttpServer server;
+
+    private final RestHighLevelClient client;
+
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+    final List<XContentType> contentTypes = Collections.synchronizedList(new ArrayList<>());
+
+    final List<byte[]> bodies = Collections.synchronizedList(new ArrayList<>());
+
+    final AtomicInteger bulks = new AtomicInteger();
+
+    final AtomicInteger maxInflight = new AtomicInteger();
+
+    /**
+     * 之后的 n 个 bulk 整体返回 429
+     */
+    final AtomicInteger rejectBulks = new AtomicInteger();
+
+    private volatile Responder responder = FakeBulkServer::success;
+
+    private volatile long delayMillis;
+
+    FakeBulkServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            int current = inflight.incrementAndGet();
+            maxInflight.accumulateAndGet(current, Math::max);
+            XContentType xContentType = XContentType.fromMediaTypeOrFormat(
+                    exchange.getRequestHeaders().getFirst("Content-Type"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Streams.copy(exchange.getRequestBody(), out);
+            byte[] body = out.toByteArray();
+            contentTypes.add(xContentType);
+            bodies.add(body);
+            int status = 200;
+            String response;
+            if (!exchange.getRequestURI().getPath().endsWith("/_bulk")) {
+                status = 201;
+                response = INDEX_RESPONSE;
+            } else {
+                bulks.incrementAndGet();
+                List<Action> actions = actions(chunks(body, xContentType));
+                batchSizes.add(actions.size());
+                if (rejectBulks.getAndDecrement() > 0) {
+                    status = 429;
+                    response = REJECTED_BULK;
+                } else {
+                    List<String> items = new ArrayList<>();
+                    for (Action action : actions) {
+                        operations.add(action.op + ":" + action.id);
+                        items.add(responder.respond(action));
+                    }
+                    response = "{\"took\":1,\"errors\":true,\"items\":[" + String.join(",", items) + "]}";
+                }
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            inflight.decrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        });
+        server.start();
+        client = new RestHighLevelClient(RestClient.builder(
+                new HttpHost("localhost", server.getAddress().getPort())));
+    }
+
+    FakeBulkServer responder(Responder responder) {
+        this.responder = responder;
+        return this;
+    }
+
+    FakeBulkServer delayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+        return this;
+    }
+
+    RestHighLevelClient getClient() {
+        return client;
+    }
+
+    /**
+     * 停止端点, 之后的请求连接失败
+     */
+    void stop() {
+        server.stop(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private List<Action> actions(List<Map<String, Object>> chunks) {
+        List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            String op = chunks.get(i).keySet().iterator().next();
+            Object actionId = ((Map<?, ?>) chunks.get(i).get(op)).get("_id");
+            Map<String, Object> source = "delete".equals(op) ? Collections.emptyMap() : chunks.get(++i);
+            Object sourceId = source.get("id");
+            String id = null != actionId ? actionId.toString() : (null != sourceId ? sourceId.toString() : "auto");
+            int attempt = attempts.computeIfAbsent(id, key -> new AtomicInteger()).getAndIncrement();
+            actions.add(new Action(op, id, source, attempt));
+        }
+        return actions;
+    }
+
+    static List<Map<String, Object>> chunks(byte[] body, XContentType xContentType) {
+        byte separator = xContentType.xContent().streamSeparator();
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] == separator) {
+                chunks.add(XContentHelper.convertToMap(new BytesArray(body, from, i - from), true, xContentType).v2());
+                from = i + 1;
+            }
+        }
+        return chunks;
+    }
+
+    static String success(Action action) {
+        switch (action.op) {
+            case "update":
+                return item(action, "updated", 200);
+            case "delete":
+                return item(action, "deleted", 200);
+            default:
+                return item(action, "created", 201);
+        }
+    }
+
+    static String item(Action action, String result, int status) {
+        return String.format(ITEM, action.op, action.id, result, status);
+    }
+
+    static String failure(Action action, int status, String type) {
+        return String.format(FAILED_ITEM, action.op, action.id, status, type);
+    }
+
+    static String rejected(Action action) {
+        return failure(action, 429, "es_rejected_execution_exception");
+    }
+
+}